@@ -2,8 +2,10 @@ package com.azienda.erp.erp_backend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ErpBackendApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,393 @@
+package com.azienda.erp.erp_backend.catalog;
+
+import com.azienda.erp.erp_backend.dto.CatalogProduct;
+import com.azienda.erp.erp_backend.entity.Product;
+import com.azienda.erp.erp_backend.money.Money;
+import com.azienda.erp.erp_backend.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Catalogo dei prodotti in memoria, per risolvere i barcode letti in cassa senza interrogare il database.
+ * I barcode sono le chiavi long di una tabella a indirizzamento aperto con scansione lineare, che punta
+ * alla posizione del prodotto in colonne di tipi primitivi (ID, barcode, ID del fornitore, prezzi in centesimi)
+ * e in quella dei nomi: oltre al nome non esiste alcun oggetto per prodotto.
+ * Il catalogo viene caricato dalle tabelle prima dell'avvio del server web e poi aggiornato da ProductService
+ * dopo il commit di ogni creazione, modifica o cancellazione. Un barcode assente viene cercato nel database
+ * e, se il prodotto esiste, aggiunto al catalogo.
+ * Gli aggiornamenti arrivano solo dall'istanza del backend che esegue la modifica, quindi con più istanze
+ * il catalogo può restare indietro: serve alle ricerche per barcode in sola lettura, mentre le vendite leggono
+ * prezzi e giacenze dalle righe dei prodotti bloccate nella propria transazione. Le letture non bloccano: partono come letture ottimistiche e vengono ripetute
+ * sotto lock solo se nel frattempo è avvenuta una scrittura.
+ */
+@Component
+public class ProductCatalog implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCatalog.class);
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate loadTransaction;
+    private final boolean enabled;
+    private final Object pendingChangesKey = new Object();
+    private final StampedLock lock = new StampedLock();
+
+    // Tabella dei barcode: ogni cella contiene un barcode e la posizione del suo prodotto più uno, zero se è vuota.
+    // Le celle occupate non superano mai la metà, così le scansioni restano brevi
+    private long[] keys = new long[2 * INITIAL_CAPACITY];
+    private int[] slots = new int[2 * INITIAL_CAPACITY];
+
+    // Colonne dei prodotti, per posizione; le posizioni liberate dalle cancellazioni vengono riusate
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] barcodes = new long[INITIAL_CAPACITY];
+    private long[] supplierIds = new long[INITIAL_CAPACITY];
+    private long[] purchaseCents = new long[INITIAL_CAPACITY];
+    private long[] sellingCents = new long[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+    private int size;
+    private volatile boolean loaded;
+
+    public ProductCatalog(ProductRepository productRepository, PlatformTransactionManager transactionManager,
+                          @Value("${erp.catalog.enabled:true}") boolean enabled) {
+        this.productRepository = productRepository;
+        // Transazione non in sola lettura: il caricamento legge dal primario, mai da una replica in ritardo
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+    }
+
+    /**
+     * Carica tutti i prodotti. Viene eseguito prima dell'avvio del server web,
+     * quindi nessun prodotto può essere modificato durante il caricamento.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            loadTransaction.executeWithoutResult(status -> {
+                try (Stream<CatalogProduct> products = productRepository.streamCatalog()) {
+                    long stamp = lock.writeLock();
+                    try {
+                        products.forEach(this::put);
+                    } finally {
+                        lock.unlockWrite(stamp);
+                    }
+                }
+            });
+            loaded = true;
+            logger.info("Catalogo dei prodotti caricato: {} prodotti in {} ms", size, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException ex) {
+            logger.error("Impossibile caricare il catalogo dei prodotti, i barcode verranno cercati nel database: ", ex);
+        }
+    }
+
+    /**
+     * Risolve un gruppo di barcode in memoria; quelli assenti dal catalogo vengono cercati nel database
+     * con un'unica query e aggiunti al catalogo.
+     *
+     * @param barcodes i codici a barre da risolvere.
+     * @return i prodotti trovati indicizzati per barcode; i barcode senza prodotto corrispondente vengono ignorati.
+     */
+    public Map<Long, CatalogProduct> resolve(Collection<Long> barcodes) {
+        if (!loaded) {
+            Map<Long, CatalogProduct> products = new LinkedHashMap<>();
+            productRepository.findCatalogByBarcodeIn(barcodes).forEach(product -> products.put(product.getBarcode(), product));
+            return products;
+        }
+
+        Map<Long, CatalogProduct> products = read(() -> lookupAll(barcodes));
+        if (products.size() == barcodes.size()) {
+            return products;
+        }
+        List<Long> missing = barcodes.stream()
+                .filter(barcode -> barcode != null && !products.containsKey(barcode))
+                .distinct()
+                .toList();
+        if (missing.isEmpty()) {
+            return products;
+        }
+
+        // Se il catalogo cambia mentre il database viene letto, i prodotti letti potrebbero essere già superati
+        // e non vengono aggiunti
+        long stamp = lock.tryOptimisticRead();
+        List<CatalogProduct> found = productRepository.findCatalogByBarcodeIn(missing);
+        found.forEach(product -> products.put(product.getBarcode(), product));
+        if (!found.isEmpty()) {
+            long writeStamp = lock.tryConvertToWriteLock(stamp);
+            if (writeStamp != 0) {
+                try {
+                    found.forEach(this::put);
+                } finally {
+                    lock.unlockWrite(writeStamp);
+                }
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Aggiorna nel catalogo un prodotto creato o modificato. I dati vengono letti subito
+     * e resi visibili solo dopo il commit della transazione corrente.
+     *
+     * @param previousBarcode il barcode del prodotto prima della modifica, o null se il prodotto è nuovo.
+     * @param product il prodotto salvato.
+     */
+    public void recordProductSaved(Long previousBarcode, Product product) {
+        Long removedBarcode = previousBarcode != null && !previousBarcode.equals(product.getBarcode()) ? previousBarcode : null;
+        record(new Change(removedBarcode, CatalogProduct.of(product)));
+    }
+
+    /**
+     * Rimuove dal catalogo un prodotto cancellato, dopo il commit della transazione corrente.
+     *
+     * @param product il prodotto cancellato.
+     */
+    public void recordProductRemoved(Product product) {
+        record(new Change(product.getBarcode(), null));
+    }
+
+    /**
+     * Restituisce il numero di prodotti nel catalogo.
+     */
+    public int size() {
+        return read(() -> size);
+    }
+
+    private void record(Change change) {
+        if (!loaded) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(List.of(change));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Change> pending = (List<Change>) TransactionSynchronizationManager.getResource(pendingChangesKey);
+        if (pending == null) {
+            List<Change> transactionChanges = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(pendingChangesKey, transactionChanges);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(transactionChanges);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingChangesKey);
+                }
+            });
+            pending = transactionChanges;
+        }
+        pending.add(change);
+    }
+
+    private void apply(Collection<Change> changes) {
+        long stamp = lock.writeLock();
+        try {
+            for (Change change : changes) {
+                if (change.removedBarcode() != null) {
+                    remove(change.removedBarcode());
+                }
+                if (change.saved() != null) {
+                    put(change.saved());
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Esegue una lettura ottimistica e, se nel frattempo è avvenuta una scrittura, la ripete sotto lock.
+     * Durante una scrittura concorrente la lettura ottimistica può vedere colonne incoerenti, anche di lunghezze
+     * diverse: il risultato e le eventuali eccezioni vengono scartati.
+     */
+    private <T> T read(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException ex) {
+                if (lock.validate(stamp)) {
+                    throw ex;
+                }
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private Map<Long, CatalogProduct> lookupAll(Collection<Long> requested) {
+        Map<Long, CatalogProduct> products = new LinkedHashMap<>();
+        for (Long barcode : requested) {
+            if (barcode == null) {
+                continue;
+            }
+            int index = indexOf(barcode);
+            if (index >= 0) {
+                products.put(barcode, productAt(slots[index] - 1));
+            }
+        }
+        return products;
+    }
+
+    private CatalogProduct productAt(int slot) {
+        return new CatalogProduct(ids[slot], barcodes[slot], names[slot], supplierIds[slot],
+                Money.toEuros(purchaseCents[slot]), Money.toEuros(sellingCents[slot]));
+    }
+
+    /**
+     * Restituisce la cella della tabella che contiene il barcode, o -1 se il barcode non è nel catalogo.
+     */
+    private int indexOf(long barcode) {
+        long[] tableKeys = keys;
+        int[] tableSlots = slots;
+        int mask = tableSlots.length - 1;
+        for (int i = hash(barcode) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            if (tableSlots[i] == 0) {
+                return -1;
+            }
+            if (tableKeys[i] == barcode) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Inserisce o sostituisce un prodotto. Va chiamato sotto il lock in scrittura.
+     */
+    private void put(CatalogProduct product) {
+        long barcode = product.getBarcode();
+        int index = indexOf(barcode);
+        int slot;
+        if (index >= 0) {
+            slot = slots[index] - 1;
+        } else {
+            if (2 * (size + 1) > slots.length) {
+                resizeTable(2 * slots.length);
+            }
+            slot = allocateSlot();
+            index = hash(barcode) & (slots.length - 1);
+            while (slots[index] != 0) {
+                index = (index + 1) & (slots.length - 1);
+            }
+            keys[index] = barcode;
+            slots[index] = slot + 1;
+            size++;
+        }
+        ids[slot] = product.getId();
+        barcodes[slot] = barcode;
+        supplierIds[slot] = product.getSupplierId();
+        purchaseCents[slot] = Money.toCents(product.getPurchasePrice());
+        sellingCents[slot] = Money.toCents(product.getSellingPrice());
+        names[slot] = product.getName();
+    }
+
+    /**
+     * Rimuove un barcode spostando indietro le celle successive della stessa sequenza,
+     * così la tabella non accumula celle cancellate. Va chiamato sotto il lock in scrittura.
+     */
+    private void remove(long barcode) {
+        int hole = indexOf(barcode);
+        if (hole < 0) {
+            return;
+        }
+        int slot = slots[hole] - 1;
+        names[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, 2 * freeSlots.length);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+
+        int mask = slots.length - 1;
+        for (int i = (hole + 1) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int home = hash(keys[i]) & mask;
+            // La cella può occupare il buco solo se il buco non precede la sua posizione ideale
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                slots[hole] = slots[i];
+                hole = i;
+            }
+        }
+        slots[hole] = 0;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == ids.length) {
+            int capacity = 2 * ids.length;
+            ids = Arrays.copyOf(ids, capacity);
+            barcodes = Arrays.copyOf(barcodes, capacity);
+            supplierIds = Arrays.copyOf(supplierIds, capacity);
+            purchaseCents = Arrays.copyOf(purchaseCents, capacity);
+            sellingCents = Arrays.copyOf(sellingCents, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        return slotCount++;
+    }
+
+    private void resizeTable(int capacity) {
+        long[] newKeys = new long[capacity];
+        int[] newSlots = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != 0) {
+                int index = hash(keys[i]) & mask;
+                while (newSlots[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                newKeys[index] = keys[i];
+                newSlots[index] = slots[i];
+            }
+        }
+        keys = newKeys;
+        slots = newSlots;
+    }
+
+    /**
+     * Mescola i bit del barcode: i barcode consecutivi finirebbero altrimenti in celle contigue.
+     */
+    static int hash(long barcode) {
+        long h = barcode * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private record Change(Long removedBarcode, CatalogProduct saved) {
+    }
+}
@@ -1,7 +1,11 @@
 package com.azienda.erp.erp_backend.controller;
 
+import com.azienda.erp.erp_backend.dto.CatalogProduct;
+import com.azienda.erp.erp_backend.dto.ProductPage;
+import com.azienda.erp.erp_backend.dto.ProductSearchFilter;
 import com.azienda.erp.erp_backend.entity.Product;
 import com.azienda.erp.erp_backend.service.ProductService;
+import com.azienda.erp.erp_backend.service.ProductSort;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -48,6 +52,44 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    /**
+     * Cerca i prodotti con filtri, ordinamento e paginazione.
+     *
+     * @param name Testo iniziale del nome del prodotto.
+     * @param supplierId ID del fornitore.
+     * @param stockBelow Soglia di giacenza: solo i prodotti con meno pezzi.
+     * @param minPrice Prezzo di vendita minimo, incluso.
+     * @param maxPrice Prezzo di vendita massimo, incluso.
+     * @param sort Campo di ordinamento: name, barcode, price o quantity.
+     * @param direction Verso dell'ordinamento: asc o desc.
+     * @param page Numero di pagina, a partire da zero.
+     * @param size Numero di prodotti per pagina.
+     * @return La pagina di prodotti e il numero totale di prodotti trovati.
+     */
+    @Operation(summary = "Cerca i prodotti", description = "Endpoint per cercare i prodotti per inizio del nome, fornitore, giacenza sotto soglia e intervallo di prezzo, con ordinamento e paginazione.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Pagina di prodotti recuperata con successo",
+                    content = @Content(schema = @Schema(implementation = ProductPage.class))),
+            @ApiResponse(responseCode = "400", description = "Parametri di ricerca non validi",
+                    content = @Content)
+    })
+    @GetMapping("/search")
+    public ResponseEntity<ProductPage> searchProducts(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) Long supplierId,
+            @RequestParam(required = false) Integer stockBelow,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(defaultValue = "name") String sort,
+            @RequestParam(defaultValue = "asc") String direction,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "" + ProductService.DEFAULT_SEARCH_PAGE_SIZE) int size) {
+        ProductSearchFilter filter = new ProductSearchFilter(name, supplierId, stockBelow, minPrice, maxPrice);
+        return ResponseEntity.ok(productService.searchProducts(filter, ProductSort.from(sort),
+                ProductSort.isDescending(direction), page, size));
+    }
+
     /**
      * Recupera un prodotto a partire dal suo barcode.
      *
@@ -58,16 +100,31 @@ public class ProductController {
             security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Prodotto trovato",
-                    content = @Content(schema = @Schema(implementation = Product.class))),
+                    content = @Content(schema = @Schema(implementation = CatalogProduct.class))),
             @ApiResponse(responseCode = "404", description = "Prodotto non trovato",
                     content = @Content)
     })
     @GetMapping("/barcode/{barcode}")
-    public ResponseEntity<Product> getProductByBarcode(@PathVariable Long barcode) {
-        Product product = productService.findByBarcode(barcode);
+    public ResponseEntity<CatalogProduct> getProductByBarcode(@PathVariable Long barcode) {
+        CatalogProduct product = productService.findByBarcode(barcode);
         return ResponseEntity.ok(product);
     }
 
+    /**
+     * Recupera in un'unica richiesta i prodotti di più barcode.
+     *
+     * @param barcodes I barcode dei prodotti da recuperare.
+     * @return I prodotti trovati, nell'ordine dei barcode; i barcode sconosciuti vengono ignorati.
+     */
+    @Operation(summary = "Recupera più prodotti tramite barcode", description = "Endpoint per ottenere in un'unica richiesta i prodotti corrispondenti a una lista di barcode.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponse(responseCode = "200", description = "Prodotti trovati",
+            content = @Content(schema = @Schema(implementation = CatalogProduct.class)))
+    @PostMapping("/barcodes")
+    public ResponseEntity<List<CatalogProduct>> getProductsByBarcodes(@RequestBody List<Long> barcodes) {
+        return ResponseEntity.ok(productService.resolveBarcodes(barcodes));
+    }
+
     /**
      * Crea un nuovo prodotto e lo associa a un fornitore.
      *
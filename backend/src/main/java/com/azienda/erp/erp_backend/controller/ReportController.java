@@ -0,0 +1,216 @@
+package com.azienda.erp.erp_backend.controller;
+
+import com.azienda.erp.erp_backend.cube.CubeDimension;
+import com.azienda.erp.erp_backend.cube.CubeQuery;
+import com.azienda.erp.erp_backend.cube.SalesCube;
+import com.azienda.erp.erp_backend.dto.MonthlySalesRollup;
+import com.azienda.erp.erp_backend.dto.SalesCubeRow;
+import com.azienda.erp.erp_backend.dto.SalesSeries;
+import com.azienda.erp.erp_backend.dto.SupplierProfitability;
+import com.azienda.erp.erp_backend.dto.TopSellers;
+import com.azienda.erp.erp_backend.entity.SalesDailyRollup;
+import com.azienda.erp.erp_backend.service.ProductAnalyticsService;
+import com.azienda.erp.erp_backend.service.SalesRollupService;
+import com.azienda.erp.erp_backend.service.SeriesGranularity;
+import com.azienda.erp.erp_backend.service.SupplierReportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller per la reportistica delle vendite nell'applicazione ERP.
+ * Espone i totali giornalieri e mensili precalcolati, la loro ricostruzione, le classifiche dei prodotti più venduti,
+ * la redditività dei fornitori e le query sul cubo delle vendite in memoria.
+ */
+@RestController
+@RequestMapping("/api/reports")
+public class ReportController {
+
+    private final SalesRollupService salesRollupService;
+    private final ProductAnalyticsService productAnalyticsService;
+    private final SupplierReportService supplierReportService;
+    private final SalesCube salesCube;
+
+    public ReportController(SalesRollupService salesRollupService, ProductAnalyticsService productAnalyticsService,
+                            SupplierReportService supplierReportService, SalesCube salesCube) {
+        this.salesRollupService = salesRollupService;
+        this.productAnalyticsService = productAnalyticsService;
+        this.supplierReportService = supplierReportService;
+        this.salesCube = salesCube;
+    }
+
+    /**
+     * Recupera i totali giornalieri delle vendite tra due date.
+     *
+     * @param from Primo giorno incluso.
+     * @param to Ultimo giorno incluso.
+     * @return Lista dei totali giornalieri.
+     */
+    @Operation(summary = "Recupera i totali giornalieri", description = "Endpoint per ottenere i totali giornalieri precalcolati delle vendite tra due date.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Totali giornalieri recuperati con successo",
+                    content = @Content(schema = @Schema(implementation = SalesDailyRollup.class))),
+            @ApiResponse(responseCode = "400", description = "Intervallo di date non valido",
+                    content = @Content)
+    })
+    @GetMapping("/daily")
+    public ResponseEntity<List<SalesDailyRollup>> getDailyRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(salesRollupService.getDailyRollups(from, to));
+    }
+
+    /**
+     * Recupera i totali mensili delle vendite tra due date.
+     *
+     * @param from Primo giorno incluso.
+     * @param to Ultimo giorno incluso.
+     * @return Lista dei totali mensili.
+     */
+    @Operation(summary = "Recupera i totali mensili", description = "Endpoint per ottenere i totali mensili delle vendite tra due date, calcolati dai totali giornalieri.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Totali mensili recuperati con successo",
+                    content = @Content(schema = @Schema(implementation = MonthlySalesRollup.class))),
+            @ApiResponse(responseCode = "400", description = "Intervallo di date non valido",
+                    content = @Content)
+    })
+    @GetMapping("/monthly")
+    public ResponseEntity<List<MonthlySalesRollup>> getMonthlyRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(salesRollupService.getMonthlyRollups(from, to));
+    }
+
+    /**
+     * Recupera la serie storica delle vendite tra due date, con un punto per ogni ora, giorno, settimana o mese.
+     *
+     * @param from Primo giorno incluso.
+     * @param to Ultimo giorno incluso.
+     * @param granularity Durata di ogni punto: hour, day, week o month.
+     * @return La serie del periodo, con i punti senza vendite a zero.
+     */
+    @Operation(summary = "Recupera la serie storica delle vendite", description = "Endpoint per ottenere numero di vendite, incasso e profitto netto per ora, giorno, settimana o mese tra due date.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Serie storica recuperata con successo",
+                    content = @Content(schema = @Schema(implementation = SalesSeries.class))),
+            @ApiResponse(responseCode = "400", description = "Intervallo di date o granularità non validi",
+                    content = @Content)
+    })
+    @GetMapping("/series")
+    public ResponseEntity<SalesSeries> getSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String granularity) {
+        return ResponseEntity.ok(salesRollupService.getSeries(from, to, SeriesGranularity.from(granularity)));
+    }
+
+    /**
+     * Recupera i prodotti più venduti tra due date, per pezzi venduti e per incasso.
+     *
+     * @param from Primo giorno incluso.
+     * @param to Ultimo giorno incluso.
+     * @param limit Numero di prodotti per classifica.
+     * @return Le classifiche del periodo.
+     */
+    @Operation(summary = "Recupera i prodotti più venduti", description = "Endpoint per ottenere le classifiche dei prodotti più venduti tra due date, per pezzi e per incasso.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Classifiche recuperate con successo",
+                    content = @Content(schema = @Schema(implementation = TopSellers.class))),
+            @ApiResponse(responseCode = "400", description = "Intervallo di date non valido",
+                    content = @Content)
+    })
+    @GetMapping("/top-products")
+    public ResponseEntity<TopSellers> getTopProducts(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "" + ProductAnalyticsService.DEFAULT_TOP_LIMIT) int limit) {
+        return ResponseEntity.ok(productAnalyticsService.getTopSellers(from, to, limit));
+    }
+
+    /**
+     * Recupera incasso, costo e margine per fornitore tra due date.
+     *
+     * @param from Primo giorno incluso.
+     * @param to Ultimo giorno incluso.
+     * @return Lista dei fornitori, dal margine più alto.
+     */
+    @Operation(summary = "Recupera la redditività dei fornitori", description = "Endpoint per ottenere incasso, costo e margine dei prodotti di ciascun fornitore venduti tra due date.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Redditività recuperata con successo",
+                    content = @Content(schema = @Schema(implementation = SupplierProfitability.class))),
+            @ApiResponse(responseCode = "400", description = "Intervallo di date non valido",
+                    content = @Content)
+    })
+    @GetMapping("/suppliers")
+    public ResponseEntity<List<SupplierProfitability>> getSupplierProfitability(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(supplierReportService.getSupplierProfitability(from, to));
+    }
+
+    /**
+     * Somma pezzi, incasso e costo delle righe di vendita tra due date, con filtri facoltativi,
+     * raggruppati per le dimensioni richieste.
+     *
+     * @param from Primo giorno incluso.
+     * @param to Ultimo giorno incluso.
+     * @param groupBy Dimensioni di raggruppamento, nell'ordine del risultato.
+     * @param productId ID dei prodotti da includere, tutti se assente.
+     * @param supplierId ID dei fornitori da includere, tutti se assente.
+     * @param paymentMethod Metodi di pagamento da includere, tutti se assente.
+     * @return Lista dei gruppi con i rispettivi totali.
+     */
+    @Operation(summary = "Interroga il cubo delle vendite", description = "Endpoint per sommare le righe di vendita tra due date per giorno, prodotto, fornitore " +
+            "e metodo di pagamento, calcolate dal cubo in memoria senza interrogare il database.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Totali recuperati con successo",
+                    content = @Content(schema = @Schema(implementation = SalesCubeRow.class))),
+            @ApiResponse(responseCode = "400", description = "Intervallo di date non valido o query con troppi gruppi",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Cubo disattivato o non ancora caricato",
+                    content = @Content)
+    })
+    @GetMapping("/cube")
+    public ResponseEntity<List<SalesCubeRow>> queryCube(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) List<CubeDimension> groupBy,
+            @RequestParam(required = false) List<Long> productId,
+            @RequestParam(required = false) List<Long> supplierId,
+            @RequestParam(required = false) List<String> paymentMethod) {
+        return ResponseEntity.ok(salesCube.query(new CubeQuery(from, to, groupBy, productId, supplierId, paymentMethod)));
+    }
+
+    /**
+     * Ricalcola da zero i totali giornalieri a partire dalle vendite registrate o dal journal delle vendite.
+     *
+     * @param fromJournal true per rileggere il journal invece delle tabelle delle vendite.
+     * @return Il numero di giorni ricostruiti.
+     */
+    @Operation(summary = "Ricostruisce i totali delle vendite", description = "Endpoint per ricalcolare da zero i totali giornalieri a partire dalle vendite registrate " +
+            "o, se richiesto, dal journal delle vendite.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponse(responseCode = "200", description = "Totali ricostruiti con successo",
+            content = @Content)
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Map<String, Integer>> rebuildRollups(@RequestParam(defaultValue = "false") boolean fromJournal) {
+        int days = fromJournal ? salesRollupService.rebuildFromJournal() : salesRollupService.rebuild();
+        return ResponseEntity.ok(Map.of("days", days));
+    }
+}
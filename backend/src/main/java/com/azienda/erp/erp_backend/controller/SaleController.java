@@ -1,6 +1,18 @@
 package com.azienda.erp.erp_backend.controller;
 
+import com.azienda.erp.erp_backend.dto.BulkSaleRequest;
+import com.azienda.erp.erp_backend.dto.BulkSaleResponse;
+import com.azienda.erp.erp_backend.dto.DashboardSummary;
+import com.azienda.erp.erp_backend.dto.SaleCalendarFacets;
+import com.azienda.erp.erp_backend.dto.SalePage;
+import com.azienda.erp.erp_backend.dto.SaleRow;
+import com.azienda.erp.erp_backend.dto.SaleView;
+import com.azienda.erp.erp_backend.dto.SalesSummary;
 import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.service.SaleEventBroadcaster;
+import com.azienda.erp.erp_backend.service.SaleExportRequest;
+import com.azienda.erp.erp_backend.service.SaleExportService;
+import com.azienda.erp.erp_backend.service.SaleGroupCommitWriter;
 import com.azienda.erp.erp_backend.service.SaleService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -8,13 +20,22 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.Parameter;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -29,9 +50,16 @@ public class SaleController {
     private static final Logger logger = LoggerFactory.getLogger(SaleController.class);
 
     private final SaleService saleService;
+    private final SaleGroupCommitWriter saleGroupCommitWriter;
+    private final SaleExportService saleExportService;
+    private final SaleEventBroadcaster saleEventBroadcaster;
 
-    public SaleController(SaleService saleService) {
+    public SaleController(SaleService saleService, SaleGroupCommitWriter saleGroupCommitWriter,
+                          SaleExportService saleExportService, SaleEventBroadcaster saleEventBroadcaster) {
         this.saleService = saleService;
+        this.saleGroupCommitWriter = saleGroupCommitWriter;
+        this.saleExportService = saleExportService;
+        this.saleEventBroadcaster = saleEventBroadcaster;
     }
 
     /**
@@ -42,9 +70,9 @@ public class SaleController {
     @Operation(summary = "Recupera tutte le vendite", description = "Endpoint per ottenere tutte le vendite registrate.",
             security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponse(responseCode = "200", description = "Lista delle vendite recuperata con successo",
-            content = @Content(schema = @Schema(implementation = Sale.class)))
+            content = @Content(schema = @Schema(implementation = SaleView.class)))
     @GetMapping
-    public List<Sale> getAllSales() {
+    public List<SaleView> getAllSales() {
         return saleService.getAllSales();
     }
 
@@ -58,13 +86,13 @@ public class SaleController {
             security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Vendita trovata",
-                    content = @Content(schema = @Schema(implementation = Sale.class))),
+                    content = @Content(schema = @Schema(implementation = SaleView.class))),
             @ApiResponse(responseCode = "404", description = "Vendita non trovata",
                     content = @Content)
     })
     @GetMapping("/{id}")
-    public ResponseEntity<Sale> getSaleById(@PathVariable Long id) {
-        Sale sale = saleService.getSaleById(id);
+    public ResponseEntity<SaleView> getSaleById(@PathVariable Long id) {
+        SaleView sale = saleService.getSaleById(id);
         return ResponseEntity.ok(sale);
     }
 
@@ -76,13 +104,120 @@ public class SaleController {
     @Operation(summary = "Recupera tutte le vendite in ordine decrescente", description = "Endpoint per ottenere tutte le vendite ordinate in ordine decrescente.",
             security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponse(responseCode = "200", description = "Vendite ordinate in ordine decrescente recuperate con successo",
-            content = @Content(schema = @Schema(implementation = Sale.class)))
+            content = @Content(schema = @Schema(implementation = SaleView.class)))
     @GetMapping("/orderByDesc")
-    public ResponseEntity<List<Sale>> getOrderByDesc() {
-        List<Sale> sales = saleService.orderByDesc();
+    public ResponseEntity<List<SaleView>> getOrderByDesc() {
+        List<SaleView> sales = saleService.orderByDesc();
         return ResponseEntity.ok(sales);
     }
 
+    /**
+     * Recupera una pagina dell'archivio vendite, filtrata per intervallo di date e ordinata dalla più recente.
+     *
+     * @param from Primo giorno incluso nel filtro (opzionale).
+     * @param to Ultimo giorno incluso nel filtro (opzionale).
+     * @param size Numero di vendite per pagina.
+     * @param pageToken Token della pagina successiva restituito dalla chiamata precedente (opzionale).
+     * @return La pagina di vendite richiesta.
+     */
+    @Operation(summary = "Recupera l'archivio vendite paginato", description = "Endpoint per ottenere le vendite in pagine a cursore, filtrate per intervallo di date.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Pagina dell'archivio recuperata con successo",
+                    content = @Content(schema = @Schema(implementation = SalePage.class))),
+            @ApiResponse(responseCode = "400", description = "Intervallo di date o token di pagina non valido",
+                    content = @Content)
+    })
+    @GetMapping("/archive")
+    public ResponseEntity<SalePage> getArchivePage(
+            @Parameter(description = "Primo giorno incluso (yyyy-MM-dd)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Ultimo giorno incluso (yyyy-MM-dd)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "" + SaleService.DEFAULT_ARCHIVE_PAGE_SIZE) int size,
+            @RequestParam(required = false) String pageToken) {
+        SalePage page = saleService.getArchivePage(from, to, size, pageToken);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Recupera anni, mesi e giorni dell'archivio vendite con il numero di vendite di ciascuno.
+     *
+     * @param year Anno di cui restituire i mesi (opzionale).
+     * @param month Mese dell'anno indicato di cui restituire i giorni (opzionale).
+     * @return Le voci del calendario dell'archivio.
+     */
+    @Operation(summary = "Recupera il calendario dell'archivio vendite", description = "Endpoint per ottenere anni, mesi e giorni con vendite e i relativi conteggi, senza scaricare le vendite.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Calendario recuperato con successo",
+                    content = @Content(schema = @Schema(implementation = SaleCalendarFacets.class))),
+            @ApiResponse(responseCode = "400", description = "Mese non valido o indicato senza anno",
+                    content = @Content)
+    })
+    @GetMapping("/facets")
+    public ResponseEntity<SaleCalendarFacets> getCalendarFacets(
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Integer month) {
+        SaleCalendarFacets facets = saleService.getCalendarFacets(year, month);
+        return ResponseEntity.ok(facets);
+    }
+
+    /**
+     * Esporta l'archivio vendite in NDJSON o CSV, un articolo venduto per riga.
+     * Le righe vengono scritte sulla risposta man mano che vengono lette dal database.
+     *
+     * @param format Formato di esportazione: ndjson oppure csv.
+     * @param from Primo giorno incluso nell'esportazione (opzionale).
+     * @param to Ultimo giorno incluso nell'esportazione (opzionale, predefinito oggi).
+     * @param response La risposta HTTP su cui scrivere il file.
+     * @throws IOException se la scrittura della risposta fallisce.
+     */
+    @Operation(summary = "Esporta l'archivio vendite", description = "Endpoint per scaricare le vendite di un periodo in formato NDJSON o CSV, con gli articoli su righe separate.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Esportazione generata con successo",
+                    content = @Content),
+            @ApiResponse(responseCode = "400", description = "Formato o intervallo di date non valido",
+                    content = @Content)
+    })
+    @GetMapping("/export")
+    public void exportSales(
+            @Parameter(description = "Formato di esportazione: ndjson oppure csv")
+            @RequestParam(defaultValue = "ndjson") String format,
+            @Parameter(description = "Primo giorno incluso (yyyy-MM-dd)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Ultimo giorno incluso (yyyy-MM-dd)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletResponse response) throws IOException {
+        SaleExportRequest exportRequest = saleExportService.prepare(from, to, format);
+        response.setContentType(exportRequest.getFormat().getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(exportRequest.getFileName()).build().toString());
+        saleExportService.export(exportRequest, response.getOutputStream());
+    }
+
+    /**
+     * Apre un flusso di server-sent events con le vendite create, modificate e cancellate,
+     * per aggiornare le dashboard senza interrogazioni periodiche.
+     *
+     * @return L'emitter su cui vengono inviati gli eventi.
+     */
+    @Operation(summary = "Segue le modifiche alle vendite in tempo reale", description = "Endpoint per ricevere come server-sent events le vendite create, modificate e cancellate. " +
+            "Gli eventi ready e resync indicano al client di ricaricare i dati completi; ogni evento sale riporta il contributo della vendita ai totali prima e dopo la modifica.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Flusso aperto con successo",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Troppi client collegati",
+                    content = @Content)
+    })
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSaleEvents() {
+        return saleEventBroadcaster.subscribe();
+    }
+
     /**
      * Recupera le ultime 12 vendite registrate.
      *
@@ -91,10 +226,10 @@ public class SaleController {
     @Operation(summary = "Recupera le ultime 12 vendite", description = "Endpoint per ottenere le ultime 12 vendite registrate.",
             security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponse(responseCode = "200", description = "Ultime 12 vendite recuperate con successo",
-            content = @Content(schema = @Schema(implementation = Sale.class)))
+            content = @Content(schema = @Schema(implementation = SaleRow.class)))
     @GetMapping("/latest")
-    public ResponseEntity<List<Sale>> getTop12Sales() {
-        List<Sale> topSales = saleService.getTop12Sales();
+    public ResponseEntity<List<SaleRow>> getTop12Sales() {
+        List<SaleRow> topSales = saleService.getTop12Sales();
         return ResponseEntity.ok(topSales);
     }
 
@@ -106,11 +241,11 @@ public class SaleController {
     @Operation(summary = "Recupera le vendite di oggi", description = "Endpoint per ottenere tutte le vendite effettuate oggi.",
             security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponse(responseCode = "200", description = "Vendite di oggi recuperate con successo",
-            content = @Content(schema = @Schema(implementation = Sale.class)))
+            content = @Content(schema = @Schema(implementation = SaleRow.class)))
     @GetMapping("/today")
-    public ResponseEntity<List<Sale>> getTodaySales() {
-        LocalDate today = LocalDate.now();
-        List<Sale> todaySales = saleService.getSalesByDate(today);
+    public ResponseEntity<List<SaleRow>> getTodaySales() {
+        LocalDate today = LocalDate.now(Sale.BUSINESS_ZONE);
+        List<SaleRow> todaySales = saleService.getSalesByDate(today);
         return ResponseEntity.ok(todaySales);
     }
 
@@ -122,31 +257,100 @@ public class SaleController {
     @Operation(summary = "Recupera le vendite del mese corrente", description = "Endpoint per ottenere tutte le vendite effettuate nel mese corrente.",
             security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponse(responseCode = "200", description = "Vendite del mese corrente recuperate con successo",
-            content = @Content(schema = @Schema(implementation = Sale.class)))
+            content = @Content(schema = @Schema(implementation = SaleRow.class)))
     @GetMapping("/current-month")
-    public ResponseEntity<List<Sale>> getCurrentMonthSales() {
-        List<Sale> currentMonthSales = saleService.getSalesByCurrentMonth();
+    public ResponseEntity<List<SaleRow>> getCurrentMonthSales() {
+        List<SaleRow> currentMonthSales = saleService.getSalesByCurrentMonth();
         return ResponseEntity.ok(currentMonthSales);
     }
 
+    /**
+     * Recupera gli indicatori della dashboard: numero di vendite, incasso e profitto di oggi e del mese corrente.
+     *
+     * @return Il riepilogo di oggi e del mese corrente.
+     */
+    @Operation(summary = "Recupera gli indicatori della dashboard", description = "Endpoint per ottenere numero di vendite, incasso e profitto di oggi e del mese corrente.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponse(responseCode = "200", description = "Indicatori recuperati con successo",
+            content = @Content(schema = @Schema(implementation = DashboardSummary.class)))
+    @GetMapping("/summary")
+    public ResponseEntity<DashboardSummary> getDashboardSummary() {
+        DashboardSummary summary = saleService.getDashboardSummary();
+        return ResponseEntity.ok(summary);
+    }
+
+    /**
+     * Recupera numero di vendite, incasso e profitto per un intervallo di giorni.
+     *
+     * @param from Primo giorno incluso.
+     * @param to Ultimo giorno incluso.
+     * @return Il riepilogo delle vendite del periodo.
+     */
+    @Operation(summary = "Recupera il riepilogo delle vendite di un periodo", description = "Endpoint per ottenere numero di vendite, incasso e profitto tra due date.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Riepilogo recuperato con successo",
+                    content = @Content(schema = @Schema(implementation = SalesSummary.class))),
+            @ApiResponse(responseCode = "400", description = "Intervallo di date non valido",
+                    content = @Content)
+    })
+    @GetMapping("/summary/range")
+    public ResponseEntity<SalesSummary> getRangeSummary(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        SalesSummary summary = saleService.summarize(from, to);
+        return ResponseEntity.ok(summary);
+    }
+
     /**
      * Crea una nuova vendita con più prodotti e quantità.
+     * Se la richiesta riporta una chiave di idempotenza già usata, restituisce la vendita creata allora
+     * senza registrarne una nuova, così il client può ripetere in sicurezza un invio rimasto senza risposta.
      *
      * @param sale Dettagli della vendita da creare.
+     * @param idempotencyKey Chiave di idempotenza scelta dal client, facoltativa.
      * @return La vendita creata.
      */
-    @Operation(summary = "Crea una nuova vendita", description = "Endpoint per creare una nuova vendita con più prodotti e quantità.",
+    @Operation(summary = "Crea una nuova vendita", description = "Endpoint per creare una nuova vendita con più prodotti e quantità. " +
+            "Con l'header Idempotency-Key un nuovo invio della stessa richiesta restituisce la vendita già creata.",
             security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Vendita creata con successo",
-                    content = @Content(schema = @Schema(implementation = Sale.class))),
-            @ApiResponse(responseCode = "400", description = "Errore durante la creazione della vendita",
+                    content = @Content(schema = @Schema(implementation = SaleView.class))),
+            @ApiResponse(responseCode = "400", description = "Errore durante la creazione della vendita o chiave di idempotenza non valida",
+                    content = @Content),
+            @ApiResponse(responseCode = "422", description = "Chiave di idempotenza già usata per una vendita con contenuto diverso",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Vendita non confermata in tempo: reinviarla con la stessa chiave di idempotenza",
                     content = @Content)
     })
     @PostMapping
-    public ResponseEntity<Sale> createSale(@Valid @RequestBody Sale sale) {
-        Sale savedSale = saleService.createSale(sale);
-        return ResponseEntity.status(HttpStatus.CREATED).body(savedSale);
+    public ResponseEntity<SaleView> createSale(@Valid @RequestBody Sale sale,
+                                               @Parameter(description = "Chiave di idempotenza scelta dal client")
+                                               @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Sale savedSale = saleGroupCommitWriter.createSale(sale, idempotencyKey);
+        return ResponseEntity.status(HttpStatus.CREATED).body(SaleView.of(savedSale));
+    }
+
+    /**
+     * Acquisisce un lotto di vendite registrate da un terminale mentre era offline.
+     * Ogni vendita è identificata dal terminale, quindi reinviare lo stesso lotto non crea duplicati.
+     *
+     * @param request Le vendite del lotto, nell'ordine in cui sono state registrate.
+     * @return L'esito di ciascuna vendita.
+     */
+    @Operation(summary = "Acquisisce un lotto di vendite", description = "Endpoint per sincronizzare in un'unica richiesta le vendite registrate offline da un terminale, con un esito per ciascuna vendita.",
+            security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lotto acquisito; l'esito di ogni vendita è riportato nella risposta",
+                    content = @Content(schema = @Schema(implementation = BulkSaleResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Lotto vuoto, troppo grande o non valido",
+                    content = @Content)
+    })
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkSaleResponse> ingestSales(@Valid @RequestBody BulkSaleRequest request) {
+        BulkSaleResponse response = saleService.ingestSales(request.getSales());
+        return ResponseEntity.ok(response);
     }
 
     /**
@@ -160,14 +364,14 @@ public class SaleController {
             security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Vendita aggiornata con successo",
-                    content = @Content(schema = @Schema(implementation = Sale.class))),
+                    content = @Content(schema = @Schema(implementation = SaleView.class))),
             @ApiResponse(responseCode = "400", description = "Errore durante l'aggiornamento della vendita",
                     content = @Content)
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Sale> updateSale(@PathVariable Long id, @Valid @RequestBody Sale saleDetails) {
+    public ResponseEntity<SaleView> updateSale(@PathVariable Long id, @Valid @RequestBody Sale saleDetails) {
         Sale updatedSale = saleService.updateSale(id, saleDetails);
-        return ResponseEntity.ok(updatedSale);
+        return ResponseEntity.ok(SaleView.of(updatedSale));
     }
 
     /**
@@ -0,0 +1,54 @@
+package com.azienda.erp.erp_backend.cube;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dizionario di una dimensione del cubo: assegna a ogni valore distinto un indice progressivo,
+ * che è ciò che le colonne memorizzano.
+ * Gli indici vengono assegnati solo dal cubo, sotto il suo lock di scrittura; le letture non bloccano
+ * e vedono sempre i valori delle righe già pubblicate, perché un valore è registrato prima delle righe che lo usano.
+ */
+final class CubeDictionary<T> {
+
+    private final Map<T, Integer> indexes = new ConcurrentHashMap<>();
+    private volatile Object[] values = new Object[16];
+    private volatile int size;
+
+    /**
+     * Restituisce l'indice di un valore, assegnandone uno nuovo se il valore non è ancora presente.
+     * Va chiamato solo sotto il lock di scrittura del cubo.
+     */
+    int indexOf(T value) {
+        Integer index = indexes.get(value);
+        if (index != null) {
+            return index;
+        }
+        int next = size;
+        if (next == values.length) {
+            values = Arrays.copyOf(values, next * 2);
+        }
+        values[next] = value;
+        indexes.put(value, next);
+        size = next + 1;
+        return next;
+    }
+
+    /**
+     * Restituisce l'indice di un valore già presente, o -1.
+     */
+    int find(T value) {
+        Integer index = indexes.get(value);
+        return index != null ? index : -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    T valueAt(int index) {
+        return (T) values[index];
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,8 @@
+package com.azienda.erp.erp_backend.cube;
+
+/**
+ * Dimensioni del cubo delle vendite secondo cui filtrare e raggruppare le righe di vendita.
+ */
+public enum CubeDimension {
+    DAY, PRODUCT, SUPPLIER, PAYMENT_METHOD
+}
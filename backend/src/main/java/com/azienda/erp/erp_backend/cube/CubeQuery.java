@@ -0,0 +1,33 @@
+package com.azienda.erp.erp_backend.cube;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Query sul cubo delle vendite: periodo, filtri facoltativi su prodotti, fornitori e metodi di pagamento
+ * e dimensioni di raggruppamento, nell'ordine in cui compaiono nel risultato.
+ * Un filtro vuoto non esclude nessuna riga; senza dimensioni il risultato è un unico totale.
+ */
+@Getter
+public class CubeQuery {
+    private final LocalDate from;
+    private final LocalDate to;
+    private final List<CubeDimension> groupBy;
+    private final Set<Long> productIds;
+    private final Set<Long> supplierIds;
+    private final Set<String> paymentMethods;
+
+    public CubeQuery(LocalDate from, LocalDate to, Collection<CubeDimension> groupBy, Collection<Long> productIds,
+                     Collection<Long> supplierIds, Collection<String> paymentMethods) {
+        this.from = from;
+        this.to = to;
+        this.groupBy = groupBy != null ? groupBy.stream().distinct().toList() : List.of();
+        this.productIds = productIds != null ? Set.copyOf(productIds) : Set.of();
+        this.supplierIds = supplierIds != null ? Set.copyOf(supplierIds) : Set.of();
+        this.paymentMethods = paymentMethods != null ? Set.copyOf(paymentMethods) : Set.of();
+    }
+}
@@ -0,0 +1,418 @@
+package com.azienda.erp.erp_backend.cube;
+
+import com.azienda.erp.erp_backend.dto.SaleLineRow;
+import com.azienda.erp.erp_backend.dto.SalesCubeRow;
+import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.entity.SaleItem;
+import com.azienda.erp.erp_backend.exception.CubeUnavailableException;
+import com.azienda.erp.erp_backend.exception.InvalidCubeQueryException;
+import com.azienda.erp.erp_backend.exception.InvalidDateRangeException;
+import com.azienda.erp.erp_backend.money.Money;
+import com.azienda.erp.erp_backend.repository.SaleItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Cubo in memoria delle righe di vendita, per analisi interattive per giorno, prodotto, fornitore
+ * e metodo di pagamento senza interrogare il database.
+ * Ogni riga di vendita occupa una posizione in colonne di tipi primitivi (giorno, indici di prodotto, fornitore
+ * e metodo di pagamento, pezzi, incasso e costo in centesimi), divise in blocchi di dimensione fissa.
+ * Il cubo viene caricato dalle tabelle prima dell'avvio del server web e poi aggiornato da SaleService
+ * dopo il commit di ogni scrittura: una modifica o una cancellazione aggiunge le righe precedenti della vendita
+ * con segno opposto, quindi le colonne crescono solo in coda e le somme restano corrette.
+ * Le query non bloccano le scritture: leggono le righe pubblicate fino a quel momento e le dividono
+ * tra i thread del pool comune. Gli sconti, applicati all'intera vendita, non sono compresi.
+ */
+@Component
+public class SalesCube implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesCube.class);
+
+    /**
+     * Numero massimo di gruppi di una query: i totali parziali di ogni thread sono array di questa dimensione.
+     */
+    public static final int MAX_GROUPS = 1 << 18;
+
+    private static final int BLOCK_SHIFT = 16;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /**
+     * Righe minime per thread: le query su pochi dati girano su un solo thread.
+     */
+    private static final int MIN_ROWS_PER_TASK = 1 << 15;
+
+    private final SaleItemRepository saleItemRepository;
+    private final TransactionTemplate loadTransaction;
+    private final boolean enabled;
+    private final Object pendingLinesKey = new Object();
+
+    private final CubeDictionary<Long> products = new CubeDictionary<>();
+    private final CubeDictionary<Long> suppliers = new CubeDictionary<>();
+    private final CubeDictionary<String> paymentMethods = new CubeDictionary<>();
+
+    // Le righe fino a size sono complete e visibili alle query; le scritture avvengono sotto il lock del cubo
+    private volatile Block[] blocks = new Block[0];
+    private volatile int size;
+    private volatile boolean loaded;
+    private int writeSize;
+
+    public SalesCube(SaleItemRepository saleItemRepository, PlatformTransactionManager transactionManager,
+                     @Value("${erp.cube.enabled:true}") boolean enabled) {
+        this.saleItemRepository = saleItemRepository;
+        // Transazione non in sola lettura: il caricamento legge dal primario, mai da una replica in ritardo
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+    }
+
+    /**
+     * Carica tutte le righe di vendita. Viene eseguito prima dell'avvio del server web,
+     * quindi nessuna vendita può essere scritta durante il caricamento.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            loadTransaction.executeWithoutResult(status -> {
+                try (Stream<SaleLineRow> lines = saleItemRepository.streamAllLines()) {
+                    synchronized (this) {
+                        lines.forEach(line -> appendRow(localDay(line.getSaleDate()), line.getProductId(),
+                                line.getSupplierId(), line.getPaymentMethods(), line.getQuantitySold(),
+                                Money.toCents(line.getSellingPrice()), Money.toCents(line.getPurchasePrice())));
+                        size = writeSize;
+                    }
+                }
+            });
+            loaded = true;
+            logger.info("Cubo delle vendite caricato: {} righe in {} ms", size, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException ex) {
+            logger.error("Impossibile caricare il cubo delle vendite, il cubo resta disattivato: ", ex);
+        }
+    }
+
+    /**
+     * Aggiunge al cubo le righe di una vendita creata o aggiornata. Le righe vengono lette subito
+     * e rese visibili solo dopo il commit della transazione corrente.
+     *
+     * @param sale la vendita salvata.
+     */
+    public void recordSaleAdded(Sale sale) {
+        record(sale, 1);
+    }
+
+    /**
+     * Sottrae dal cubo le righe di una vendita cancellata, o di una vendita prima di una modifica.
+     * Va chiamato prima di modificare le righe: il loro stato viene letto subito.
+     *
+     * @param sale la vendita nello stato da sottrarre.
+     */
+    public void recordSaleRemoved(Sale sale) {
+        record(sale, -1);
+    }
+
+    /**
+     * Somma pezzi, incasso e costo delle righe di vendita che rispettano i filtri della query,
+     * per ciascun gruppo delle dimensioni richieste.
+     *
+     * @param query periodo, filtri e dimensioni di raggruppamento.
+     * @return i gruppi con almeno una riga, nell'ordine delle dimensioni richieste.
+     * @throws InvalidDateRangeException se l'intervallo di date non è valido.
+     * @throws CubeUnavailableException se il cubo è disattivato o non ancora caricato.
+     * @throws InvalidCubeQueryException se la query produrrebbe troppi gruppi.
+     */
+    public List<SalesCubeRow> query(CubeQuery query) {
+        if (query.getFrom().isAfter(query.getTo())) {
+            throw new InvalidDateRangeException("La data iniziale non può essere successiva alla data finale.");
+        }
+        if (!loaded) {
+            throw new CubeUnavailableException("Il cubo delle vendite non è disponibile.");
+        }
+
+        // Le righe vanno lette prima dei dizionari, così ogni indice delle righe lette è già nei dizionari
+        int rowCount = size;
+        Block[] snapshot = blocks;
+        Plan plan = plan(query);
+        int tasks = (int) Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(),
+                (long) rowCount / MIN_ROWS_PER_TASK));
+        int rowsPerTask = (rowCount + tasks - 1) / tasks;
+
+        Totals totals = IntStream.range(0, tasks)
+                .parallel()
+                .mapToObj(task -> {
+                    Totals partial = new Totals(plan.groups);
+                    scan(snapshot, task * rowsPerTask, Math.min(rowCount, (task + 1) * rowsPerTask), plan, partial);
+                    return partial;
+                })
+                .reduce(Totals::merge)
+                .orElseGet(() -> new Totals(plan.groups));
+        return toRows(query, plan, totals);
+    }
+
+    private void record(Sale sale, int sign) {
+        if (!loaded) {
+            return;
+        }
+        List<Line> lines = new ArrayList<>(sale.getSaleItems().size());
+        int day = localDay(sale.getSaleDate());
+        for (SaleItem item : sale.getSaleItems()) {
+            lines.add(new Line(day, item.getProduct().getId(), item.getProduct().getSupplier().getId(),
+                    sale.getPaymentMethods(), sign * item.getQuantitySold(),
+                    sign * Money.toCents(item.getSellingPrice()), sign * Money.toCents(item.getPurchasePrice())));
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append(lines);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Line> pending = (List<Line>) TransactionSynchronizationManager.getResource(pendingLinesKey);
+        if (pending == null) {
+            List<Line> transactionLines = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(pendingLinesKey, transactionLines);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(transactionLines);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingLinesKey);
+                }
+            });
+            pending = transactionLines;
+        }
+        pending.addAll(lines);
+    }
+
+    private synchronized void append(Collection<Line> lines) {
+        for (Line line : lines) {
+            appendRow(line.day(), line.productId(), line.supplierId(), line.paymentMethod(), line.units(),
+                    line.revenueCents(), line.costCents());
+        }
+        size = writeSize;
+    }
+
+    /**
+     * Scrive una riga dopo l'ultima, senza pubblicarla. Va chiamato sotto il lock del cubo.
+     */
+    private void appendRow(int day, Long productId, Long supplierId, String paymentMethod,
+                           int units, long revenueCents, long costCents) {
+        int row = writeSize;
+        int blockIndex = row >>> BLOCK_SHIFT;
+        Block[] current = blocks;
+        if (blockIndex == current.length) {
+            current = Arrays.copyOf(current, blockIndex + 1);
+            current[blockIndex] = new Block();
+            blocks = current;
+        }
+        Block block = current[blockIndex];
+        int offset = row & BLOCK_MASK;
+        block.minDay = Math.min(block.minDay, day);
+        block.maxDay = Math.max(block.maxDay, day);
+        block.days[offset] = day;
+        block.products[offset] = products.indexOf(productId);
+        block.suppliers[offset] = suppliers.indexOf(supplierId);
+        block.paymentMethods[offset] = paymentMethods.indexOf(paymentMethod);
+        block.units[offset] = units;
+        block.revenueCents[offset] = revenueCents;
+        block.costCents[offset] = costCents;
+        writeSize = row + 1;
+    }
+
+    private Plan plan(CubeQuery query) {
+        int fromDay = toDay(query.getFrom());
+        int toDay = toDay(query.getTo());
+        int[] cardinalities = new int[CubeDimension.values().length];
+        cardinalities[CubeDimension.DAY.ordinal()] = toDay - fromDay + 1;
+        cardinalities[CubeDimension.PRODUCT.ordinal()] = products.size();
+        cardinalities[CubeDimension.SUPPLIER.ordinal()] = suppliers.size();
+        cardinalities[CubeDimension.PAYMENT_METHOD.ordinal()] = paymentMethods.size();
+
+        // Ogni gruppo è un indice in array densi: le dimensioni raggruppate hanno passi decrescenti, le altre zero
+        int[] strides = new int[CubeDimension.values().length];
+        long groups = 1;
+        List<CubeDimension> groupBy = query.getGroupBy();
+        for (int i = groupBy.size() - 1; i >= 0; i--) {
+            CubeDimension dimension = groupBy.get(i);
+            strides[dimension.ordinal()] = (int) groups;
+            groups *= Math.max(1, cardinalities[dimension.ordinal()]);
+            if (groups > MAX_GROUPS) {
+                throw new InvalidCubeQueryException("La query produce troppi gruppi: restringere il periodo "
+                        + "o raggruppare per meno dimensioni.");
+            }
+        }
+
+        return new Plan(fromDay, toDay, (int) groups, cardinalities, strides,
+                mask(products, query.getProductIds()),
+                mask(suppliers, query.getSupplierIds()),
+                mask(paymentMethods, query.getPaymentMethods()));
+    }
+
+    private static <T> boolean[] mask(CubeDictionary<T> dictionary, Collection<T> values) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        boolean[] mask = new boolean[dictionary.size()];
+        for (T value : values) {
+            int index = dictionary.find(value);
+            if (index >= 0 && index < mask.length) {
+                mask[index] = true;
+            }
+        }
+        return mask;
+    }
+
+    private static void scan(Block[] blocks, int start, int end, Plan plan, Totals totals) {
+        int fromDay = plan.fromDay;
+        int toDay = plan.toDay;
+        boolean[] productMask = plan.productMask;
+        boolean[] supplierMask = plan.supplierMask;
+        boolean[] paymentMask = plan.paymentMask;
+        int dayStride = plan.strides[CubeDimension.DAY.ordinal()];
+        int productStride = plan.strides[CubeDimension.PRODUCT.ordinal()];
+        int supplierStride = plan.strides[CubeDimension.SUPPLIER.ordinal()];
+        int paymentStride = plan.strides[CubeDimension.PAYMENT_METHOD.ordinal()];
+        long[] units = totals.units;
+        long[] revenueCents = totals.revenueCents;
+        long[] costCents = totals.costCents;
+
+        int row = start;
+        while (row < end) {
+            Block block = blocks[row >>> BLOCK_SHIFT];
+            int offset = row & BLOCK_MASK;
+            int limit = Math.min(BLOCK_SIZE, offset + (end - row));
+            if (block.maxDay < fromDay || block.minDay > toDay) {
+                row += limit - offset;
+                continue;
+            }
+            for (int i = offset; i < limit; i++) {
+                int day = block.days[i];
+                if (day < fromDay || day > toDay) {
+                    continue;
+                }
+                int product = block.products[i];
+                int supplier = block.suppliers[i];
+                int payment = block.paymentMethods[i];
+                if ((productMask != null && (product >= productMask.length || !productMask[product]))
+                        || (supplierMask != null && (supplier >= supplierMask.length || !supplierMask[supplier]))
+                        || (paymentMask != null && (payment >= paymentMask.length || !paymentMask[payment]))) {
+                    continue;
+                }
+                int group = (day - fromDay) * dayStride + product * productStride
+                        + supplier * supplierStride + payment * paymentStride;
+                units[group] += block.units[i];
+                revenueCents[group] += block.revenueCents[i];
+                costCents[group] += block.costCents[i];
+            }
+            row += limit - offset;
+        }
+    }
+
+    private List<SalesCubeRow> toRows(CubeQuery query, Plan plan, Totals totals) {
+        List<CubeDimension> groupBy = query.getGroupBy();
+        List<SalesCubeRow> rows = new ArrayList<>();
+        for (int group = 0; group < plan.groups; group++) {
+            if (totals.units[group] == 0 && totals.revenueCents[group] == 0 && totals.costCents[group] == 0) {
+                continue;
+            }
+            LocalDate day = null;
+            Long productId = null;
+            Long supplierId = null;
+            String paymentMethod = null;
+            for (CubeDimension dimension : groupBy) {
+                int key = group / plan.strides[dimension.ordinal()] % Math.max(1, plan.cardinalities[dimension.ordinal()]);
+                switch (dimension) {
+                    case DAY -> day = LocalDate.ofEpochDay((long) plan.fromDay + key);
+                    case PRODUCT -> productId = products.valueAt(key);
+                    case SUPPLIER -> supplierId = suppliers.valueAt(key);
+                    case PAYMENT_METHOD -> paymentMethod = paymentMethods.valueAt(key);
+                }
+            }
+            long revenueCents = totals.revenueCents[group];
+            long costCents = totals.costCents[group];
+            rows.add(new SalesCubeRow(day, productId, supplierId, paymentMethod, totals.units[group],
+                    Money.toEuros(revenueCents), Money.toEuros(costCents),
+                    Money.toEuros(Money.subtract(revenueCents, costCents))));
+        }
+        return rows;
+    }
+
+    private static int localDay(ZonedDateTime saleDate) {
+        return toDay(saleDate.withZoneSameInstant(Sale.BUSINESS_ZONE).toLocalDate());
+    }
+
+    private static int toDay(LocalDate date) {
+        // Limitato a un quarto dell'intervallo degli int, così anche la durata di un periodo resta un int
+        return (int) Math.max(Integer.MIN_VALUE / 4, Math.min(Integer.MAX_VALUE / 4, date.toEpochDay()));
+    }
+
+    /**
+     * Blocco di righe: una posizione per riga in ciascuna colonna, più il primo e l'ultimo giorno presenti,
+     * che permettono di saltare i blocchi fuori dal periodo richiesto. Le righe arrivano per lo più in ordine
+     * di data, quindi i blocchi coprono periodi brevi.
+     */
+    private static final class Block {
+        private int minDay = Integer.MAX_VALUE;
+        private int maxDay = Integer.MIN_VALUE;
+        private final int[] days = new int[BLOCK_SIZE];
+        private final int[] products = new int[BLOCK_SIZE];
+        private final int[] suppliers = new int[BLOCK_SIZE];
+        private final int[] paymentMethods = new int[BLOCK_SIZE];
+        private final int[] units = new int[BLOCK_SIZE];
+        private final long[] revenueCents = new long[BLOCK_SIZE];
+        private final long[] costCents = new long[BLOCK_SIZE];
+    }
+
+    /**
+     * Totali per gruppo calcolati da un thread.
+     */
+    private static final class Totals {
+        private final long[] units;
+        private final long[] revenueCents;
+        private final long[] costCents;
+
+        private Totals(int groups) {
+            this.units = new long[groups];
+            this.revenueCents = new long[groups];
+            this.costCents = new long[groups];
+        }
+
+        private Totals merge(Totals other) {
+            for (int group = 0; group < units.length; group++) {
+                units[group] += other.units[group];
+                revenueCents[group] += other.revenueCents[group];
+                costCents[group] += other.costCents[group];
+            }
+            return this;
+        }
+    }
+
+    private record Plan(int fromDay, int toDay, int groups, int[] cardinalities, int[] strides,
+                        boolean[] productMask, boolean[] supplierMask, boolean[] paymentMask) {
+    }
+
+    private record Line(int day, Long productId, Long supplierId, String paymentMethod,
+                        int units, long revenueCents, long costCents) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.azienda.erp.erp_backend.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Configurazione dei database quando è attiva la replica in sola lettura.
+ * Il pool del primario usa le proprietà spring.datasource come la configurazione predefinita;
+ * il pool della replica ha proprietà proprie, credenziali del primario se non indicate, e un tempo di attesa
+ * breve per una connessione, così una replica ferma rallenta solo la prima lettura prima del ritorno al primario.
+ * L'applicazione usa il DataSource di instradamento, che sceglie il pool al momento della prima istruzione SQL.
+ */
+@Configuration
+@ConditionalOnProperty(name = "erp.datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${erp.datasource.replica.url}") String url,
+                                              @Value("${erp.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${erp.datasource.replica.password:${spring.datasource.password:}}") String password,
+                                              @Value("${erp.datasource.replica.max-pool-size:10}") int maxPoolSize,
+                                              @Value("${erp.datasource.replica.connection-timeout-ms:2000}") long connectionTimeoutMs) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        dataSource.setMaximumPoolSize(Math.max(1, maxPoolSize));
+        dataSource.setConnectionTimeout(Math.max(250, connectionTimeoutMs));
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 @Value("${erp.datasource.replica.retry-after-ms:30000}") long retryAfterMs) {
+        return new LazyConnectionDataSourceProxy(
+                new ReadReplicaRoutingDataSource(primaryDataSource, replicaDataSource, retryAfterMs));
+    }
+}
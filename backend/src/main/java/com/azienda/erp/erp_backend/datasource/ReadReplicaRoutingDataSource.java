@@ -0,0 +1,83 @@
+package com.azienda.erp.erp_backend.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataSource che apre le connessioni delle transazioni in sola lettura sulla replica e tutte le altre sul primario.
+ * Va usato dietro un {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, che chiede
+ * la connessione solo alla prima istruzione SQL, quando la transazione è già stata marcata come in sola lettura.
+ * Se la replica non concede una connessione, la transazione prosegue sul primario e la replica viene
+ * esclusa per l'intervallo indicato, trascorso il quale viene riprovata.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long retryAfterNanos;
+    private volatile boolean replicaDown;
+    private volatile long replicaRetryAt;
+
+    public ReadReplicaRoutingDataSource(DataSource primary, DataSource replica, long retryAfterMs) {
+        this.primary = primary;
+        this.replica = replica;
+        this.retryAfterNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, retryAfterMs));
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (useReplica()) {
+            try {
+                Connection connection = replica.getConnection();
+                markReplicaUp();
+                return connection;
+            } catch (SQLException ex) {
+                markReplicaDown(ex);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Indica se la replica è disponibile o se è trascorso l'intervallo dopo il quale va riprovata.
+     */
+    public boolean isReplicaAvailable() {
+        return !replicaDown || System.nanoTime() - replicaRetryAt >= 0;
+    }
+
+    private boolean useReplica() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && isReplicaAvailable();
+    }
+
+    private void markReplicaDown(SQLException ex) {
+        replicaRetryAt = System.nanoTime() + retryAfterNanos;
+        if (!replicaDown) {
+            replicaDown = true;
+            logger.warn("Replica non raggiungibile, letture sul primario per {} ms: {}",
+                    TimeUnit.NANOSECONDS.toMillis(retryAfterNanos), ex.getMessage());
+        }
+    }
+
+    private void markReplicaUp() {
+        if (replicaDown) {
+            replicaDown = false;
+            logger.info("Replica di nuovo raggiungibile, letture in sola lettura sulla replica");
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.entity.Sale;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Vendita registrata da un terminale, accompagnata dall'identificativo che il terminale le ha assegnato.
+ * La data della vendita, se presente, viene conservata.
+ */
+@Getter
+@Setter
+public class BulkSaleEntry {
+
+    @NotBlank(message = "L'identificativo del terminale non può essere vuoto.")
+    @Size(max = 64, message = "L'identificativo del terminale non può superare i 64 caratteri.")
+    private String clientId;
+
+    @NotNull(message = "La vendita non può essere nulla.")
+    @Valid
+    private Sale sale;
+}
@@ -0,0 +1,27 @@
+package com.azienda.erp.erp_backend.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Lotto di vendite inviato da un terminale al rientro in linea.
+ */
+@Getter
+@Setter
+public class BulkSaleRequest {
+
+    /**
+     * Numero massimo di vendite accettate in un singolo lotto.
+     */
+    public static final int MAX_SALES = 500;
+
+    @NotEmpty(message = "Il lotto deve contenere almeno una vendita.")
+    @Size(max = MAX_SALES, message = "Il lotto non può contenere più di " + MAX_SALES + " vendite.")
+    @Valid
+    private List<BulkSaleEntry> sales;
+}
@@ -0,0 +1,32 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Riepilogo dell'acquisizione di un lotto di vendite, con un esito per ciascuna vendita nell'ordine ricevuto.
+ */
+@Getter
+public class BulkSaleResponse {
+    private final int created;
+    private final int duplicates;
+    private final int rejected;
+    private final List<BulkSaleResult> results;
+
+    public BulkSaleResponse(List<BulkSaleResult> results) {
+        int createdCount = 0;
+        int duplicateCount = 0;
+        for (BulkSaleResult result : results) {
+            if (result.getStatus() == BulkSaleResult.Status.CREATED) {
+                createdCount++;
+            } else if (result.getStatus() == BulkSaleResult.Status.DUPLICATE) {
+                duplicateCount++;
+            }
+        }
+        this.created = createdCount;
+        this.duplicates = duplicateCount;
+        this.rejected = results.size() - createdCount - duplicateCount;
+        this.results = results;
+    }
+}
@@ -0,0 +1,41 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+/**
+ * Esito dell'acquisizione di una vendita del lotto.
+ * {@code saleId} è valorizzato per le vendite create e per i duplicati, {@code error} per quelle respinte.
+ */
+@Getter
+public class BulkSaleResult {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        REJECTED
+    }
+
+    private final String clientId;
+    private final Status status;
+    private final Long saleId;
+    private final String error;
+
+    public BulkSaleResult(String clientId, Status status, Long saleId, String error) {
+        this.clientId = clientId;
+        this.status = status;
+        this.saleId = saleId;
+        this.error = error;
+    }
+
+    public static BulkSaleResult created(String clientId, Long saleId) {
+        return new BulkSaleResult(clientId, Status.CREATED, saleId, null);
+    }
+
+    public static BulkSaleResult duplicate(String clientId, Long saleId) {
+        return new BulkSaleResult(clientId, Status.DUPLICATE, saleId, null);
+    }
+
+    public static BulkSaleResult rejected(String clientId, String error) {
+        return new BulkSaleResult(clientId, Status.REJECTED, null, error);
+    }
+}
@@ -0,0 +1,17 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+/**
+ * Voce del calendario dell'archivio: un anno, un mese o un giorno con il numero di vendite registrate.
+ */
+@Getter
+public class CalendarFacet {
+    private final int value;
+    private final long count;
+
+    public CalendarFacet(Integer value, Long count) {
+        this.value = value;
+        this.count = count != null ? count : 0L;
+    }
+}
@@ -0,0 +1,52 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.entity.Product;
+import com.azienda.erp.erp_backend.entity.Supplier;
+import lombok.Getter;
+
+/**
+ * Prodotto del catalogo in memoria: i dati usati dalla cassa per la lettura dei barcode, senza giacenza
+ * né dettagli del fornitore.
+ */
+@Getter
+public class CatalogProduct {
+    private final Long id;
+    private final Long barcode;
+    private final String name;
+    private final Long supplierId;
+    private final double purchasePrice;
+    private final double sellingPrice;
+
+    public CatalogProduct(Long id, Long barcode, String name, Long supplierId, Double purchasePrice, Double sellingPrice) {
+        this.id = id;
+        this.barcode = barcode;
+        this.name = name;
+        this.supplierId = supplierId;
+        this.purchasePrice = purchasePrice;
+        this.sellingPrice = sellingPrice;
+    }
+
+    public static CatalogProduct of(Product product) {
+        return new CatalogProduct(product.getId(), product.getBarcode(), product.getName(),
+                product.getSupplier().getId(), product.getPurchasePrice(), product.getSellingPrice());
+    }
+
+    /**
+     * Restituisce il prodotto con i soli dati del catalogo, non gestito dal contesto di persistenza.
+     * Basta come prodotto delle righe di vendita, che ne salvano solo l'ID; la giacenza non è valorizzata.
+     *
+     * @return il prodotto con ID, barcode, nome, prezzi e ID del fornitore.
+     */
+    public Product toProduct() {
+        Supplier supplier = new Supplier();
+        supplier.setId(supplierId);
+        Product product = new Product();
+        product.setId(id);
+        product.setBarcode(barcode);
+        product.setName(name);
+        product.setSupplier(supplier);
+        product.setPurchasePrice(purchasePrice);
+        product.setSellingPrice(sellingPrice);
+        return product;
+    }
+}
@@ -0,0 +1,19 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * Numero di vendite registrate in un giorno locale.
+ */
+@Getter
+public class DailySaleCount {
+    private final LocalDate day;
+    private final long count;
+
+    public DailySaleCount(LocalDate day, Long count) {
+        this.day = day;
+        this.count = count != null ? count : 0L;
+    }
+}
@@ -0,0 +1,17 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+/**
+ * Indicatori della dashboard: riepilogo delle vendite di oggi e del mese corrente.
+ */
+@Getter
+public class DashboardSummary {
+    private final SalesSummary today;
+    private final SalesSummary currentMonth;
+
+    public DashboardSummary(SalesSummary today, SalesSummary currentMonth) {
+        this.today = today;
+        this.currentMonth = currentMonth;
+    }
+}
@@ -0,0 +1,29 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.money.Money;
+import lombok.Getter;
+
+/**
+ * Totali mensili delle vendite, ottenuti sommando in centesimi le righe giornaliere del mese.
+ */
+@Getter
+public class MonthlySalesRollup {
+    private final int year;
+    private final int month;
+    private final long saleCount;
+    private final double revenue;
+    private final double netProfit;
+    private final double discount;
+    private final long units;
+
+    public MonthlySalesRollup(Integer year, Integer month, Long saleCount, Long revenueCents,
+                              Long netProfitCents, Long discountCents, Long units) {
+        this.year = year;
+        this.month = month;
+        this.saleCount = saleCount;
+        this.revenue = Money.toEuros(revenueCents);
+        this.netProfit = Money.toEuros(netProfitCents);
+        this.discount = Money.toEuros(discountCents);
+        this.units = units;
+    }
+}
@@ -0,0 +1,26 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.entity.Product;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Pagina di prodotti restituita dalla ricerca, con il numero totale di prodotti che rispettano i filtri.
+ */
+@Getter
+public class ProductPage {
+    private final List<Product> content;
+    private final int page;
+    private final int size;
+    private final long totalElements;
+    private final int totalPages;
+
+    public ProductPage(List<Product> content, int page, int size, long totalElements, int totalPages) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.totalElements = totalElements;
+        this.totalPages = totalPages;
+    }
+}
@@ -0,0 +1,27 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.entity.Product;
+import lombok.Getter;
+
+/**
+ * Riferimento sintetico al prodotto di una riga di vendita: solo i dati mostrati nel dettaglio vendita,
+ * senza fornitore e giacenza.
+ */
+@Getter
+public class ProductRef {
+    private final Long id;
+    private final Long barcode;
+    private final String name;
+    private final double sellingPrice;
+
+    public ProductRef(Long id, Long barcode, String name, double sellingPrice) {
+        this.id = id;
+        this.barcode = barcode;
+        this.name = name;
+        this.sellingPrice = sellingPrice;
+    }
+
+    public static ProductRef of(Product product) {
+        return new ProductRef(product.getId(), product.getBarcode(), product.getName(), product.getSellingPrice());
+    }
+}
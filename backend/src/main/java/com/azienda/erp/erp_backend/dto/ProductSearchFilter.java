@@ -0,0 +1,25 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+/**
+ * Filtri della ricerca dei prodotti; i filtri null non vengono applicati.
+ * Il nome viene cercato come prefisso, senza distinzione tra maiuscole e minuscole;
+ * la giacenza è filtrata come strettamente inferiore alla soglia e il prezzo di vendita con estremi inclusi.
+ */
+@Getter
+public class ProductSearchFilter {
+    private final String name;
+    private final Long supplierId;
+    private final Integer stockBelow;
+    private final Double minPrice;
+    private final Double maxPrice;
+
+    public ProductSearchFilter(String name, Long supplierId, Integer stockBelow, Double minPrice, Double maxPrice) {
+        this.name = name;
+        this.supplierId = supplierId;
+        this.stockBelow = stockBelow;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+}
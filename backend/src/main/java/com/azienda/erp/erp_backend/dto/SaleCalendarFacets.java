@@ -0,0 +1,22 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Anni, mesi e giorni selezionabili nell'archivio vendite con i rispettivi conteggi.
+ * I mesi sono valorizzati solo se è stato indicato un anno, i giorni solo se sono stati indicati anno e mese.
+ */
+@Getter
+public class SaleCalendarFacets {
+    private final List<CalendarFacet> years;
+    private final List<CalendarFacet> months;
+    private final List<CalendarFacet> days;
+
+    public SaleCalendarFacets(List<CalendarFacet> years, List<CalendarFacet> months, List<CalendarFacet> days) {
+        this.years = years;
+        this.months = months;
+        this.days = days;
+    }
+}
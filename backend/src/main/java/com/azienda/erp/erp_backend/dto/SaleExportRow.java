@@ -0,0 +1,46 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Riga dell'esportazione vendite: i dati della vendita ripetuti per ciascun articolo venduto.
+ * Le colonne dell'articolo sono null per una vendita senza righe.
+ */
+@Getter
+public class SaleExportRow {
+    private final Long saleId;
+    private final ZonedDateTime saleDate;
+    private final Double totalPrice;
+    private final Double netProfit;
+    private final Double discount;
+    private final String paymentMethods;
+    private final String note;
+    private final Long totalProducts;
+    private final Long itemId;
+    private final Long barcode;
+    private final String productName;
+    private final Integer quantitySold;
+    private final Double itemSellingPrice;
+    private final Double itemPurchasePrice;
+
+    public SaleExportRow(Long saleId, ZonedDateTime saleDate, Double totalPrice, Double netProfit, Double discount,
+                         String paymentMethods, String note, Long totalProducts, Long itemId, Long barcode,
+                         String productName, Integer quantitySold, Double itemSellingPrice, Double itemPurchasePrice) {
+        this.saleId = saleId;
+        this.saleDate = saleDate;
+        this.totalPrice = totalPrice;
+        this.netProfit = netProfit;
+        this.discount = discount;
+        this.paymentMethods = paymentMethods;
+        this.note = note;
+        this.totalProducts = totalProducts;
+        this.itemId = itemId;
+        this.barcode = barcode;
+        this.productName = productName;
+        this.quantitySold = quantitySold;
+        this.itemSellingPrice = itemSellingPrice;
+        this.itemPurchasePrice = itemPurchasePrice;
+    }
+}
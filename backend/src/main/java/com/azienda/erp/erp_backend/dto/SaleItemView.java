@@ -0,0 +1,29 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.entity.SaleItem;
+import lombok.Getter;
+
+/**
+ * Riga di una vendita così come viene restituita dalle API: quantità, totali di riga e prodotto sintetico.
+ */
+@Getter
+public class SaleItemView {
+    private final Long id;
+    private final int quantitySold;
+    private final double sellingPrice;
+    private final double purchasePrice;
+    private final ProductRef product;
+
+    public SaleItemView(Long id, int quantitySold, double sellingPrice, double purchasePrice, ProductRef product) {
+        this.id = id;
+        this.quantitySold = quantitySold;
+        this.sellingPrice = sellingPrice;
+        this.purchasePrice = purchasePrice;
+        this.product = product;
+    }
+
+    public static SaleItemView of(SaleItem saleItem) {
+        return new SaleItemView(saleItem.getId(), saleItem.getQuantitySold(), saleItem.getSellingPrice(),
+                saleItem.getPurchasePrice(), ProductRef.of(saleItem.getProduct()));
+    }
+}
@@ -0,0 +1,31 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Riga di vendita ridotta ai dati usati dal cubo delle vendite: data e metodo di pagamento della vendita,
+ * prodotto, fornitore, quantità e importi della riga.
+ */
+@Getter
+public class SaleLineRow {
+    private final ZonedDateTime saleDate;
+    private final String paymentMethods;
+    private final Long productId;
+    private final Long supplierId;
+    private final int quantitySold;
+    private final double sellingPrice;
+    private final double purchasePrice;
+
+    public SaleLineRow(ZonedDateTime saleDate, String paymentMethods, Long productId, Long supplierId,
+                       Integer quantitySold, Double sellingPrice, Double purchasePrice) {
+        this.saleDate = saleDate;
+        this.paymentMethods = paymentMethods;
+        this.productId = productId;
+        this.supplierId = supplierId;
+        this.quantitySold = quantitySold;
+        this.sellingPrice = sellingPrice;
+        this.purchasePrice = purchasePrice;
+    }
+}
@@ -0,0 +1,22 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Pagina di vendite restituita dall'archivio con paginazione a cursore.
+ * Il token {@code nextPageToken} va ripassato così com'è per ottenere la pagina successiva.
+ */
+@Getter
+public class SalePage {
+    private final List<SaleView> content;
+    private final String nextPageToken;
+    private final boolean hasNext;
+
+    public SalePage(List<SaleView> content, String nextPageToken) {
+        this.content = content;
+        this.nextPageToken = nextPageToken;
+        this.hasNext = nextPageToken != null;
+    }
+}
@@ -0,0 +1,30 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Riga di un elenco di vendite senza articoli, proiettata direttamente dalla query.
+ */
+@Getter
+public class SaleRow {
+    private final Long id;
+    private final ZonedDateTime saleDate;
+    private final double totalPrice;
+    private final double netProfit;
+    private final double discount;
+    private final String paymentMethods;
+    private final Long totalProducts;
+
+    public SaleRow(Long id, ZonedDateTime saleDate, double totalPrice, double netProfit, double discount,
+                   String paymentMethods, Long totalProducts) {
+        this.id = id;
+        this.saleDate = saleDate;
+        this.totalPrice = totalPrice;
+        this.netProfit = netProfit;
+        this.discount = discount;
+        this.paymentMethods = paymentMethods;
+        this.totalProducts = totalProducts;
+    }
+}
@@ -0,0 +1,49 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.money.Money;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+/**
+ * Contributo di una singola vendita ai totali giornalieri: giorno locale, incasso, profitto, sconto e pezzi.
+ * Gli importi sono in centesimi, così le somme e le differenze tra contributi sono esatte.
+ * Viene usato sia per calcolare le variazioni incrementali sia per ricostruire i totali da zero.
+ */
+@Getter
+public class SaleTotals {
+    private final LocalDate day;
+    private final long revenueCents;
+    private final long netProfitCents;
+    private final long discountCents;
+    private final long units;
+
+    public SaleTotals(ZonedDateTime saleDate, Double revenue, Double netProfit, Double discount, Long units) {
+        this.day = saleDate.withZoneSameInstant(Sale.BUSINESS_ZONE).toLocalDate();
+        this.revenueCents = revenue != null ? Money.toCents(revenue) : 0L;
+        this.netProfitCents = netProfit != null ? Money.toCents(netProfit) : 0L;
+        this.discountCents = discount != null ? Money.toCents(discount) : 0L;
+        this.units = units != null ? units : 0L;
+    }
+
+    public SaleTotals(LocalDate day, long revenueCents, long netProfitCents, long discountCents, long units) {
+        this.day = day;
+        this.revenueCents = revenueCents;
+        this.netProfitCents = netProfitCents;
+        this.discountCents = discountCents;
+        this.units = units;
+    }
+
+    /**
+     * Estrae il contributo di una vendita già salvata.
+     *
+     * @param sale la vendita.
+     * @return il contributo della vendita ai totali giornalieri.
+     */
+    public static SaleTotals of(Sale sale) {
+        return new SaleTotals(sale.getSaleDate(), sale.getTotalPrice(), sale.getNetProfit(),
+                sale.getDiscount(), sale.getTotalProducts());
+    }
+}
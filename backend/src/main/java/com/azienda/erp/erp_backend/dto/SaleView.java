@@ -0,0 +1,43 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.entity.Sale;
+import lombok.Getter;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Vendita completa di righe, restituita dal dettaglio e dagli elenchi che mostrano gli articoli venduti.
+ * Va costruita all'interno della transazione che ha caricato la vendita.
+ */
+@Getter
+public class SaleView {
+    private final Long id;
+    private final ZonedDateTime saleDate;
+    private final double totalPrice;
+    private final double netProfit;
+    private final double discount;
+    private final String paymentMethods;
+    private final String note;
+    private final Long totalProducts;
+    private final List<SaleItemView> saleItems;
+
+    public SaleView(Long id, ZonedDateTime saleDate, double totalPrice, double netProfit, double discount,
+                    String paymentMethods, String note, Long totalProducts, List<SaleItemView> saleItems) {
+        this.id = id;
+        this.saleDate = saleDate;
+        this.totalPrice = totalPrice;
+        this.netProfit = netProfit;
+        this.discount = discount;
+        this.paymentMethods = paymentMethods;
+        this.note = note;
+        this.totalProducts = totalProducts;
+        this.saleItems = saleItems;
+    }
+
+    public static SaleView of(Sale sale) {
+        return new SaleView(sale.getId(), sale.getSaleDate(), sale.getTotalPrice(), sale.getNetProfit(),
+                sale.getDiscount(), sale.getPaymentMethods(), sale.getNote(), sale.getTotalProducts(),
+                sale.getSaleItems().stream().map(SaleItemView::of).toList());
+    }
+}
@@ -0,0 +1,33 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * Gruppo del risultato di una query sul cubo delle vendite: i valori delle dimensioni raggruppate,
+ * null per quelle non raggruppate, e i totali delle righe di vendita del gruppo.
+ */
+@Getter
+public class SalesCubeRow {
+    private final LocalDate day;
+    private final Long productId;
+    private final Long supplierId;
+    private final String paymentMethod;
+    private final long unitsSold;
+    private final double revenue;
+    private final double cost;
+    private final double margin;
+
+    public SalesCubeRow(LocalDate day, Long productId, Long supplierId, String paymentMethod,
+                        long unitsSold, double revenue, double cost, double margin) {
+        this.day = day;
+        this.productId = productId;
+        this.supplierId = supplierId;
+        this.paymentMethod = paymentMethod;
+        this.unitsSold = unitsSold;
+        this.revenue = revenue;
+        this.cost = cost;
+        this.margin = margin;
+    }
+}
@@ -0,0 +1,28 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Totali complessivi di tutte le vendite registrate, con gli importi in centesimi.
+ * Servono a verificare che una ricostruzione dei totali giornalieri sia coerente con le vendite salvate.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class SalesGrandTotals {
+    private final long saleCount;
+    private final long revenueCents;
+    private final long netProfitCents;
+    private final long discountCents;
+    private final long units;
+
+    public SalesGrandTotals(Long saleCount, Long revenueCents, Long netProfitCents, Long discountCents, Long units) {
+        this.saleCount = saleCount != null ? saleCount : 0L;
+        this.revenueCents = revenueCents != null ? revenueCents : 0L;
+        this.netProfitCents = netProfitCents != null ? netProfitCents : 0L;
+        this.discountCents = discountCents != null ? discountCents : 0L;
+        this.units = units != null ? units : 0L;
+    }
+}
@@ -0,0 +1,26 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.service.SeriesGranularity;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Serie storica delle vendite tra due giorni: un punto per ogni intervallo della granularità richiesta,
+ * compresi quelli senza vendite.
+ */
+@Getter
+public class SalesSeries {
+    private final LocalDate from;
+    private final LocalDate to;
+    private final SeriesGranularity granularity;
+    private final List<SalesSeriesPoint> points;
+
+    public SalesSeries(LocalDate from, LocalDate to, SeriesGranularity granularity, List<SalesSeriesPoint> points) {
+        this.from = from;
+        this.to = to;
+        this.granularity = granularity;
+        this.points = points;
+    }
+}
@@ -0,0 +1,36 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.money.Money;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Punto di una serie storica delle vendite: inizio dell'intervallo in ora locale, numero di vendite,
+ * incasso e profitto netto dell'intervallo.
+ */
+@Getter
+public class SalesSeriesPoint {
+    private final LocalDateTime start;
+    private final long count;
+    private final double revenue;
+    private final double netProfit;
+
+    public SalesSeriesPoint(LocalDateTime start, long count, double revenue, double netProfit) {
+        this.start = start;
+        this.count = count;
+        this.revenue = revenue;
+        this.netProfit = netProfit;
+    }
+
+    /**
+     * Costruisce il punto di un'ora direttamente dalla query di aggregazione, che somma gli importi in centesimi.
+     */
+    public SalesSeriesPoint(LocalDate day, Integer hour, Long count, Long revenueCents, Long netProfitCents) {
+        this.start = day.atTime(hour, 0);
+        this.count = count != null ? count : 0L;
+        this.revenue = revenueCents != null ? Money.toEuros(revenueCents) : 0.0;
+        this.netProfit = netProfitCents != null ? Money.toEuros(netProfitCents) : 0.0;
+    }
+}
@@ -0,0 +1,22 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.money.Money;
+import lombok.Getter;
+
+/**
+ * Indicatori aggregati delle vendite in un periodo: numero di vendite, incasso e profitto netto.
+ * Viene costruito direttamente dalla query di aggregazione, senza caricare le singole vendite;
+ * gli importi sono sommati in centesimi.
+ */
+@Getter
+public class SalesSummary {
+    private final long count;
+    private final double revenue;
+    private final double netProfit;
+
+    public SalesSummary(Long count, Long revenueCents, Long netProfitCents) {
+        this.count = count != null ? count : 0L;
+        this.revenue = revenueCents != null ? Money.toEuros(revenueCents) : 0.0;
+        this.netProfit = netProfitCents != null ? Money.toEuros(netProfitCents) : 0.0;
+    }
+}
@@ -0,0 +1,49 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.money.Money;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Redditività di un fornitore in un periodo: pezzi venduti, incasso, costo d'acquisto e margine
+ * delle righe di vendita dei suoi prodotti. Gli sconti applicati all'intera vendita non sono ripartiti
+ * tra i fornitori, quindi non sono compresi. Gli importi sono sommati in centesimi, anche tra periodi diversi.
+ */
+@Getter
+public class SupplierProfitability {
+    private final Long supplierId;
+    private final String supplierName;
+    private final long unitsSold;
+    private final double revenue;
+    private final double cost;
+    private final double margin;
+    private final double marginPercent;
+    @Getter(AccessLevel.NONE)
+    private final long revenueCents;
+    @Getter(AccessLevel.NONE)
+    private final long costCents;
+
+    public SupplierProfitability(Long supplierId, String supplierName, Long unitsSold, Long revenueCents, Long costCents) {
+        this.supplierId = supplierId;
+        this.supplierName = supplierName;
+        this.unitsSold = unitsSold != null ? unitsSold : 0L;
+        this.revenueCents = revenueCents != null ? revenueCents : 0L;
+        this.costCents = costCents != null ? costCents : 0L;
+        long marginCents = Money.subtract(this.revenueCents, this.costCents);
+        this.revenue = Money.toEuros(this.revenueCents);
+        this.cost = Money.toEuros(this.costCents);
+        this.margin = Money.toEuros(marginCents);
+        this.marginPercent = this.revenueCents != 0 ? (double) marginCents / this.revenueCents * 100 : 0.0;
+    }
+
+    /**
+     * Somma i totali dello stesso fornitore calcolati su due periodi distinti.
+     *
+     * @param other i totali dell'altro periodo.
+     * @return i totali complessivi.
+     */
+    public SupplierProfitability plus(SupplierProfitability other) {
+        return new SupplierProfitability(supplierId, supplierName, unitsSold + other.unitsSold,
+                Money.add(revenueCents, other.revenueCents), Money.add(costCents, other.costCents));
+    }
+}
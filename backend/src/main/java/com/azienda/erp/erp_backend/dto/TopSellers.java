@@ -0,0 +1,24 @@
+package com.azienda.erp.erp_backend.dto;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Prodotti più venduti in un periodo, classificati per pezzi venduti e per incasso.
+ */
+@Getter
+public class TopSellers {
+    private final LocalDate from;
+    private final LocalDate to;
+    private final List<TopSellingProduct> byUnits;
+    private final List<TopSellingProduct> byRevenue;
+
+    public TopSellers(LocalDate from, LocalDate to, List<TopSellingProduct> byUnits, List<TopSellingProduct> byRevenue) {
+        this.from = from;
+        this.to = to;
+        this.byUnits = byUnits;
+        this.byRevenue = byRevenue;
+    }
+}
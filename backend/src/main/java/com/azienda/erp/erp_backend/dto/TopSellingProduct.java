@@ -0,0 +1,28 @@
+package com.azienda.erp.erp_backend.dto;
+
+import com.azienda.erp.erp_backend.money.Money;
+import lombok.Getter;
+
+/**
+ * Totali di vendita di un prodotto in un periodo: pezzi venduti, incasso e profitto delle sue righe.
+ * Viene costruito direttamente dalla query di aggregazione sugli articoli venduti, che somma gli importi in centesimi.
+ */
+@Getter
+public class TopSellingProduct {
+    private final Long productId;
+    private final Long barcode;
+    private final String name;
+    private final long unitsSold;
+    private final double revenue;
+    private final double netProfit;
+
+    public TopSellingProduct(Long productId, Long barcode, String name, Long unitsSold,
+                             Long revenueCents, Long netProfitCents) {
+        this.productId = productId;
+        this.barcode = barcode;
+        this.name = name;
+        this.unitsSold = unitsSold != null ? unitsSold : 0L;
+        this.revenue = revenueCents != null ? Money.toEuros(revenueCents) : 0.0;
+        this.netProfit = netProfitCents != null ? Money.toEuros(netProfitCents) : 0.0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.azienda.erp.erp_backend.entity;
+
+/**
+ * Tabella dei contatori da cui le entità prelevano blocchi di ID tramite {@link jakarta.persistence.TableGenerator}.
+ * Gli ID vengono assegnati in memoria all'interno del blocco, quindi Hibernate può raggruppare gli insert in batch;
+ * la dimensione del blocco è indicata da ciascuna entità con {@code allocationSize}.
+ */
+public final class IdSequences {
+
+    public static final String TABLE = "id_sequences";
+    public static final String NAME_COLUMN = "sequence_name";
+    public static final String VALUE_COLUMN = "next_val";
+
+    private IdSequences() {
+    }
+}
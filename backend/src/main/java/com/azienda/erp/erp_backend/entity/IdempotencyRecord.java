@@ -0,0 +1,43 @@
+package com.azienda.erp.erp_backend.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Chiave di idempotenza ricevuta con una richiesta di creazione vendita, associata alla vendita creata.
+ * La chiave primaria garantisce che la stessa chiave registri al massimo una vendita,
+ * anche con richieste concorrenti su istanze diverse del backend. L'impronta del contenuto della richiesta
+ * permette di riconoscere una chiave riusata per una vendita diversa.
+ */
+@Entity
+@Table(name = "idempotency_record", indexes = @Index(name = "idx_idempotency_record_created_at", columnList = "createdAt"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    public static final int MAX_KEY_LENGTH = 100;
+    public static final int REQUEST_HASH_LENGTH = 64;
+
+    @Id
+    @Column(name = "idempotency_key", length = MAX_KEY_LENGTH)
+    private String key;
+
+    @Column(nullable = false)
+    private Long saleId;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // Assente nelle chiavi registrate prima dell'introduzione dell'impronta
+    @Column(length = REQUEST_HASH_LENGTH)
+    private String requestHash;
+}
@@ -1,10 +1,17 @@
 package com.azienda.erp.erp_backend.entity;
 
+import com.azienda.erp.erp_backend.money.MoneyConverter;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_product_name", columnList = "name"),
+        @Index(name = "idx_product_supplier_name", columnList = "supplier_id, name"),
+        @Index(name = "idx_product_quantity", columnList = "quantity"),
+        @Index(name = "idx_product_selling_price", columnList = "sellingPrice")
+})
 @Data
 @Getter
 @Setter
@@ -13,7 +20,9 @@ import lombok.*;
 public class Product {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "product_id")
+    @TableGenerator(name = "product_id", table = IdSequences.TABLE, pkColumnName = IdSequences.NAME_COLUMN,
+            valueColumnName = IdSequences.VALUE_COLUMN, pkColumnValue = "product", allocationSize = 50)
     private Long id;
 
     @NotNull
@@ -34,9 +43,11 @@ public class Product {
 
     @NotNull
     @Column(nullable = false)
+    @Convert(converter = MoneyConverter.class)
     private double purchasePrice;
 
     @NotNull
     @Column(nullable = false)
+    @Convert(converter = MoneyConverter.class)
     private double sellingPrice;
 }
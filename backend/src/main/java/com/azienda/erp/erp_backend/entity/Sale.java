@@ -1,5 +1,7 @@
 package com.azienda.erp.erp_backend.entity;
 
+import com.azienda.erp.erp_backend.money.MoneyConverter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -7,19 +9,45 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 
+import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import java.time.ZoneId;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_sale_sale_date_id", columnList = "saleDate, id"),
+        @Index(name = "idx_sale_local_date_date_id", columnList = "saleLocalDate, saleDate, id"),
+        @Index(name = "idx_sale_local_date_hour", columnList = "saleLocalDate, saleHour")
+})
+@NamedEntityGraph(
+        name = Sale.WITH_ITEMS_GRAPH,
+        attributeNodes = @NamedAttributeNode(value = "saleItems", subgraph = "saleItems"),
+        subgraphs = {
+                @NamedSubgraph(name = "saleItems", attributeNodes = @NamedAttributeNode(value = "product", subgraph = "product")),
+                @NamedSubgraph(name = "product", attributeNodes = @NamedAttributeNode("supplier"))
+        }
+)
 @Data
 @ToString(exclude = "saleItems")
 @NoArgsConstructor
 @AllArgsConstructor
 public class Sale {
 
+    /**
+     * Fuso orario di riferimento dell'attività, usato per stabilire il giorno e il mese di una vendita.
+     */
+    public static final ZoneId BUSINESS_ZONE = ZoneId.of("Europe/Rome");
+
+    /**
+     * Grafo di caricamento che recupera nella stessa query righe, prodotti e fornitori della vendita.
+     */
+    public static final String WITH_ITEMS_GRAPH = "Sale.withItems";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "sale_id")
+    @TableGenerator(name = "sale_id", table = IdSequences.TABLE, pkColumnName = IdSequences.NAME_COLUMN,
+            valueColumnName = IdSequences.VALUE_COLUMN, pkColumnValue = "sale", allocationSize = 50)
     private Long id;
 
     @OneToMany(mappedBy = "sale", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
@@ -29,15 +57,32 @@ public class Sale {
     @Column(nullable = false)
     private ZonedDateTime saleDate;
 
+    /**
+     * Giorno e ora della vendita nel fuso orario dell'attività, ricavati da saleDate a ogni salvataggio.
+     * Permettono di filtrare e raggruppare per giorno, mese o ora con scansioni d'indice, indipendentemente
+     * dal fuso orario del server e del database. Sono nullable solo per consentire l'aggiunta delle colonne
+     * a tabelle esistenti: le righe precedenti vengono completate all'avvio.
+     */
+    @Column(nullable = true)
+    @JsonIgnore
+    private LocalDate saleLocalDate;
+
+    @Column(nullable = true)
+    @JsonIgnore
+    private Integer saleHour;
+
     @Column(nullable = false)
     @NotNull
+    @Convert(converter = MoneyConverter.class)
     private double totalPrice;
 
     @Column(nullable = false)
     @NotNull
+    @Convert(converter = MoneyConverter.class)
     private double netProfit;
 
     @Column(nullable = true)
+    @Convert(converter = MoneyConverter.class)
     private double discount;
 
     @Column(nullable = false)
@@ -50,8 +95,32 @@ public class Sale {
     @Column(nullable = true)
     private Long totalProducts;
 
+    /**
+     * Identificativo assegnato dal terminale che ha registrato la vendita, usato per scartare i reinvii.
+     */
+    @Column(nullable = true, unique = true, length = 64)
+    @JsonIgnore
+    private String clientRef;
+
     @PrePersist
     public void prePersist() {
-        this.saleDate = ZonedDateTime.now(ZoneId.of("Europe/Rome"));
+        if (this.saleDate == null) {
+            this.saleDate = ZonedDateTime.now(BUSINESS_ZONE);
+        }
+        syncLocalDate();
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        syncLocalDate();
+    }
+
+    /**
+     * Ricalcola giorno e ora locali a partire da saleDate.
+     */
+    public void syncLocalDate() {
+        ZonedDateTime localDate = this.saleDate.withZoneSameInstant(BUSINESS_ZONE);
+        this.saleLocalDate = localDate.toLocalDate();
+        this.saleHour = localDate.getHour();
     }
 }
@@ -1,5 +1,6 @@
 package com.azienda.erp.erp_backend.entity;
 
+import com.azienda.erp.erp_backend.money.MoneyConverter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
@@ -12,7 +13,9 @@ import lombok.*;
 public class SaleItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "sale_item_id")
+    @TableGenerator(name = "sale_item_id", table = IdSequences.TABLE, pkColumnName = IdSequences.NAME_COLUMN,
+            valueColumnName = IdSequences.VALUE_COLUMN, pkColumnValue = "sale_item", allocationSize = 200)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -28,8 +31,10 @@ public class SaleItem {
     private int quantitySold;
 
     @Column(nullable = false)
+    @Convert(converter = MoneyConverter.class)
     private double sellingPrice;
 
     @Column(nullable = false)
+    @Convert(converter = MoneyConverter.class)
     private double purchasePrice;
 }
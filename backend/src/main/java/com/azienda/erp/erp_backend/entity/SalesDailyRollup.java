@@ -0,0 +1,47 @@
+package com.azienda.erp.erp_backend.entity;
+
+import com.azienda.erp.erp_backend.money.MoneyConverter;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Totali giornalieri delle vendite, aggiornati in modo incrementale a ogni creazione,
+ * modifica o cancellazione di una vendita. Il giorno è quello locale dell'attività.
+ */
+@Entity
+@Table(name = "sales_daily_rollup")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesDailyRollup {
+
+    @Id
+    @Column(name = "sale_day")
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private long saleCount;
+
+    @Column(nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private double revenue;
+
+    @Column(nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private double netProfit;
+
+    @Column(nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private double discount;
+
+    @Column(nullable = false)
+    private long units;
+}
@@ -0,0 +1,7 @@
+package com.azienda.erp.erp_backend.exception;
+
+public class CubeUnavailableException extends RuntimeException {
+    public CubeUnavailableException(String message) {
+        super(message);
+    }
+}
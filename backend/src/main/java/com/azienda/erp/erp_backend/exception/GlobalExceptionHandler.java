@@ -11,6 +11,7 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.async.AsyncRequestNotUsableException;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -38,6 +39,14 @@ public class GlobalExceptionHandler {
     private static final String VALIDATION_ERROR_MESSAGE = "Errore di validazione.";
     private static final String MESSAGE_NOT_READABLE_ERROR = "Il messaggio della richiesta non è leggibile o è malformato.";
     private static final String DUPLICATE_BARCODE_MESSAGE = "Il barcode deve essere unico!";
+    private static final String INVALID_PAGE_TOKEN_MESSAGE = "Token di pagina non valido.";
+    private static final String UNSUPPORTED_EXPORT_FORMAT_MESSAGE = "Formato di esportazione non supportato. Usare ndjson o csv.";
+    private static final String UNSUPPORTED_GRANULARITY_MESSAGE = "Granularità non supportata. Usare hour, day, week o month.";
+    private static final String INVALID_IDEMPOTENCY_KEY_MESSAGE = "Chiave di idempotenza non valida.";
+    private static final String IDEMPOTENCY_KEY_REUSED_MESSAGE = "Chiave di idempotenza già usata per una vendita diversa.";
+    private static final String SALE_WRITE_TIMEOUT_MESSAGE = "La vendita non è stata confermata in tempo. Riprova più tardi.";
+    private static final String CUBE_UNAVAILABLE_MESSAGE = "Il cubo delle vendite non è ancora disponibile. Riprova più tardi.";
+    private static final String TOO_MANY_SUBSCRIBERS_MESSAGE = "Troppi client collegati agli aggiornamenti in tempo reale. Riprova più tardi.";
 
     /**
      * Gestisce l'eccezione BadCredentialsException.
@@ -289,4 +298,159 @@ public class GlobalExceptionHandler {
         ErrorResponse error = new ErrorResponse(DUPLICATE_BARCODE_MESSAGE, HttpStatus.BAD_REQUEST.value());
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
-}
\ No newline at end of file
+
+    /**
+     * Gestisce l'eccezione InvalidPageTokenException.
+     *
+     * @param ex Eccezione sollevata.
+     * @return Risposta HTTP con codice 400 (BAD_REQUEST).
+     */
+    @ExceptionHandler(InvalidPageTokenException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidPageTokenException(InvalidPageTokenException ex) {
+        logger.warn("Token di pagina non valido: ", ex);
+        ErrorResponse error = new ErrorResponse(INVALID_PAGE_TOKEN_MESSAGE, HttpStatus.BAD_REQUEST.value());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+
+    /**
+     * Gestisce l'eccezione InvalidDateRangeException.
+     *
+     * @param ex Eccezione sollevata.
+     * @return Risposta HTTP con codice 400 (BAD_REQUEST).
+     */
+    @ExceptionHandler(InvalidDateRangeException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidDateRangeException(InvalidDateRangeException ex) {
+        logger.warn("Intervallo di date non valido: ", ex);
+        ErrorResponse error = new ErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST.value());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+
+    /**
+     * Gestisce l'eccezione UnsupportedExportFormatException.
+     *
+     * @param ex Eccezione sollevata.
+     * @return Risposta HTTP con codice 400 (BAD_REQUEST).
+     */
+    @ExceptionHandler(UnsupportedExportFormatException.class)
+    public ResponseEntity<ErrorResponse> handleUnsupportedExportFormatException(UnsupportedExportFormatException ex) {
+        logger.warn("Formato di esportazione non supportato: ", ex);
+        ErrorResponse error = new ErrorResponse(UNSUPPORTED_EXPORT_FORMAT_MESSAGE, HttpStatus.BAD_REQUEST.value());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+
+    /**
+     * Gestisce l'eccezione InvalidProductSearchException.
+     *
+     * @param ex Eccezione sollevata.
+     * @return Risposta HTTP con codice 400 (BAD_REQUEST).
+     */
+    @ExceptionHandler(InvalidProductSearchException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidProductSearchException(InvalidProductSearchException ex) {
+        logger.warn("Ricerca dei prodotti non valida: ", ex);
+        ErrorResponse error = new ErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST.value());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+
+    /**
+     * Gestisce l'eccezione UnsupportedGranularityException.
+     *
+     * @param ex Eccezione sollevata.
+     * @return Risposta HTTP con codice 400 (BAD_REQUEST).
+     */
+    @ExceptionHandler(UnsupportedGranularityException.class)
+    public ResponseEntity<ErrorResponse> handleUnsupportedGranularityException(UnsupportedGranularityException ex) {
+        logger.warn("Granularità non supportata: ", ex);
+        ErrorResponse error = new ErrorResponse(UNSUPPORTED_GRANULARITY_MESSAGE, HttpStatus.BAD_REQUEST.value());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+
+    /**
+     * Gestisce l'eccezione InvalidIdempotencyKeyException.
+     *
+     * @param ex Eccezione sollevata.
+     * @return Risposta HTTP con codice 400 (BAD_REQUEST).
+     */
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidIdempotencyKeyException(InvalidIdempotencyKeyException ex) {
+        logger.warn("Chiave di idempotenza non valida: ", ex);
+        ErrorResponse error = new ErrorResponse(INVALID_IDEMPOTENCY_KEY_MESSAGE, HttpStatus.BAD_REQUEST.value());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+
+    /**
+     * Gestisce l'eccezione IdempotencyKeyReusedException.
+     *
+     * @param ex Eccezione sollevata.
+     * @return Risposta HTTP con codice 422 (UNPROCESSABLE_ENTITY).
+     */
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException ex) {
+        logger.warn("Chiave di idempotenza riusata: ", ex);
+        ErrorResponse error = new ErrorResponse(IDEMPOTENCY_KEY_REUSED_MESSAGE, HttpStatus.UNPROCESSABLE_ENTITY.value());
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(error);
+    }
+
+    /**
+     * Gestisce l'eccezione InvalidCubeQueryException.
+     *
+     * @param ex Eccezione sollevata.
+     * @return Risposta HTTP con codice 400 (BAD_REQUEST).
+     */
+    @ExceptionHandler(InvalidCubeQueryException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidCubeQueryException(InvalidCubeQueryException ex) {
+        logger.warn("Query sul cubo delle vendite non valida: ", ex);
+        ErrorResponse error = new ErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST.value());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+
+    /**
+     * Gestisce l'eccezione SaleWriteTimeoutException.
+     *
+     * @param ex Eccezione sollevata.
+     * @return Risposta HTTP con codice 503 (SERVICE_UNAVAILABLE).
+     */
+    @ExceptionHandler(SaleWriteTimeoutException.class)
+    public ResponseEntity<ErrorResponse> handleSaleWriteTimeoutException(SaleWriteTimeoutException ex) {
+        logger.warn("Registrazione della vendita non confermata: ", ex);
+        ErrorResponse error = new ErrorResponse(SALE_WRITE_TIMEOUT_MESSAGE, HttpStatus.SERVICE_UNAVAILABLE.value());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+
+    /**
+     * Gestisce l'eccezione CubeUnavailableException.
+     *
+     * @param ex Eccezione sollevata.
+     * @return Risposta HTTP con codice 503 (SERVICE_UNAVAILABLE).
+     */
+    @ExceptionHandler(CubeUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleCubeUnavailableException(CubeUnavailableException ex) {
+        logger.warn("Cubo delle vendite non disponibile: ", ex);
+        ErrorResponse error = new ErrorResponse(CUBE_UNAVAILABLE_MESSAGE, HttpStatus.SERVICE_UNAVAILABLE.value());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+
+    /**
+     * Gestisce l'eccezione TooManySubscribersException.
+     *
+     * @param ex Eccezione sollevata.
+     * @return Risposta HTTP con codice 503 (SERVICE_UNAVAILABLE).
+     */
+    @ExceptionHandler(TooManySubscribersException.class)
+    public ResponseEntity<ErrorResponse> handleTooManySubscribersException(TooManySubscribersException ex) {
+        logger.warn("Collegamento al flusso delle vendite rifiutato: ", ex);
+        ErrorResponse error = new ErrorResponse(TOO_MANY_SUBSCRIBERS_MESSAGE, HttpStatus.SERVICE_UNAVAILABLE.value());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+
+    /**
+     * Gestisce l'eccezione AsyncRequestNotUsableException, sollevata quando il client chiude
+     * un collegamento asincrono, come il flusso delle vendite. La risposta non è più utilizzabile,
+     * quindi non viene scritto nulla.
+     *
+     * @param ex Eccezione sollevata.
+     */
+    @ExceptionHandler(AsyncRequestNotUsableException.class)
+    public void handleAsyncRequestNotUsableException(AsyncRequestNotUsableException ex) {
+        logger.debug("Collegamento asincrono chiuso dal client: {}", ex.getMessage());
+    }
+}
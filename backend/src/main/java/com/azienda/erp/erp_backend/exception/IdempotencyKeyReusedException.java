@@ -0,0 +1,7 @@
+package com.azienda.erp.erp_backend.exception;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
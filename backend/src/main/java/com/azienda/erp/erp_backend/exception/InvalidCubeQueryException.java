@@ -0,0 +1,7 @@
+package com.azienda.erp.erp_backend.exception;
+
+public class InvalidCubeQueryException extends RuntimeException {
+    public InvalidCubeQueryException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.azienda.erp.erp_backend.exception;
+
+public class InvalidDateRangeException extends RuntimeException {
+    public InvalidDateRangeException(String message) {
+        super(message);
+    }
+}
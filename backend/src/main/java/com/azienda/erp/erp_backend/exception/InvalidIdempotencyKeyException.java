@@ -0,0 +1,7 @@
+package com.azienda.erp.erp_backend.exception;
+
+public class InvalidIdempotencyKeyException extends RuntimeException {
+    public InvalidIdempotencyKeyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.azienda.erp.erp_backend.exception;
+
+public class InvalidPageTokenException extends RuntimeException {
+    public InvalidPageTokenException(String message) {
+        super(message);
+    }
+}
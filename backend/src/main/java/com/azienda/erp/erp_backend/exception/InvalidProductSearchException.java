@@ -0,0 +1,7 @@
+package com.azienda.erp.erp_backend.exception;
+
+public class InvalidProductSearchException extends RuntimeException {
+    public InvalidProductSearchException(String message) {
+        super(message);
+    }
+}
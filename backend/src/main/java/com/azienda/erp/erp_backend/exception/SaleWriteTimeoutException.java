@@ -0,0 +1,7 @@
+package com.azienda.erp.erp_backend.exception;
+
+public class SaleWriteTimeoutException extends RuntimeException {
+    public SaleWriteTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.azienda.erp.erp_backend.exception;
+
+public class TooManySubscribersException extends RuntimeException {
+    public TooManySubscribersException(String message) {
+        super(message);
+    }
+}
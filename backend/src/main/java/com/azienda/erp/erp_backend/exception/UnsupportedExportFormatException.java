@@ -0,0 +1,7 @@
+package com.azienda.erp.erp_backend.exception;
+
+public class UnsupportedExportFormatException extends RuntimeException {
+    public UnsupportedExportFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.azienda.erp.erp_backend.exception;
+
+public class UnsupportedGranularityException extends RuntimeException {
+    public UnsupportedGranularityException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,172 @@
+package com.azienda.erp.erp_backend.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Segmento del journal: un file di dimensione fissa mappato in memoria.
+ * Dopo un'intestazione con il primo numero di sequenza, ogni record è scritto come
+ * lunghezza del contenuto, CRC32 del contenuto e contenuto, che inizia con il proprio numero di sequenza.
+ * La parte non ancora scritta del file è a zero, quindi una lunghezza nulla segna la fine dei record.
+ * La lettura si ferma anche al primo record troncato, con CRC errato o fuori sequenza,
+ * così una scrittura interrotta a metà non viene mai restituita. Quando un segmento viene riaperto in scrittura
+ * i byte dopo l'ultimo record valido sono azzerati: record arrivati su disco dopo uno andato perso
+ * non possono tornare leggibili in coda ai nuovi.
+ */
+final class JournalSegment {
+
+    private static final int MAGIC = 0x53414C45;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path path;
+    private final long baseSequence;
+    private final MappedByteBuffer buffer;
+    private int position;
+    private long nextSequence;
+
+    private JournalSegment(Path path, long baseSequence, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseSequence = baseSequence;
+        this.buffer = buffer;
+        this.position = HEADER_SIZE;
+        this.nextSequence = baseSequence;
+    }
+
+    /**
+     * Crea un nuovo segmento vuoto della dimensione indicata.
+     */
+    static JournalSegment create(Path path, long baseSequence, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, baseSequence);
+            buffer.force();
+            return new JournalSegment(path, baseSequence, buffer);
+        }
+    }
+
+    /**
+     * Apre un segmento esistente e si posiziona dopo l'ultimo record valido, azzerando in scrittura
+     * quanto resta di eventuali scritture interrotte.
+     *
+     * @param writable true per poter aggiungere record al segmento.
+     */
+    static JournalSegment open(Path path, boolean writable) throws IOException {
+        StandardOpenOption[] options = writable
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            MappedByteBuffer buffer = channel.map(
+                    writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Segmento del journal non valido: " + path);
+            }
+            JournalSegment segment = new JournalSegment(path, buffer.getLong(8), buffer);
+            segment.scan(null);
+            if (writable) {
+                segment.clearTail();
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Aggiunge un record. Il contenuto deve iniziare con il numero di sequenza del record.
+     *
+     * @return false se il record non entra nello spazio rimasto nel segmento.
+     */
+    boolean append(ByteBuffer payload) {
+        int length = payload.remaining();
+        if (position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        buffer.put(position + RECORD_HEADER_SIZE, payload, payload.position(), length);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        // La lunghezza viene scritta per ultima: finché manca, il record non è visibile in lettura
+        buffer.putInt(position, length);
+        position += RECORD_HEADER_SIZE + length;
+        nextSequence++;
+        return true;
+    }
+
+    /**
+     * Passa al consumer il contenuto di ogni record valido, in ordine.
+     *
+     * @return il numero di record letti.
+     */
+    long read(Consumer<ByteBuffer> consumer) {
+        return scan(consumer);
+    }
+
+    private long scan(Consumer<ByteBuffer> consumer) {
+        int offset = HEADER_SIZE;
+        long expectedSequence = baseSequence;
+        CRC32 crc = new CRC32();
+        while (offset + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length < Long.BYTES || offset + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(offset + RECORD_HEADER_SIZE, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(offset + 4) || payload.getLong(0) != expectedSequence) {
+                break;
+            }
+            if (consumer != null) {
+                consumer.accept(payload);
+            }
+            offset += RECORD_HEADER_SIZE + length;
+            expectedSequence++;
+        }
+        if (consumer == null) {
+            position = offset;
+            nextSequence = expectedSequence;
+        }
+        return expectedSequence - baseSequence;
+    }
+
+    /**
+     * Azzera i byte successivi all'ultimo record valido. Scrive solo i byte diversi da zero,
+     * quindi un segmento chiuso regolarmente non viene modificato.
+     */
+    private void clearTail() {
+        boolean cleared = false;
+        for (int offset = position; offset < buffer.capacity(); offset++) {
+            if (buffer.get(offset) != 0) {
+                buffer.put(offset, (byte) 0);
+                cleared = true;
+            }
+        }
+        if (cleared) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Forza la scrittura su disco delle pagine modificate.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getNextSequence() {
+        return nextSequence;
+    }
+}
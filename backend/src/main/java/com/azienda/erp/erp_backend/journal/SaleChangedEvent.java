@@ -0,0 +1,48 @@
+package com.azienda.erp.erp_backend.journal;
+
+import com.azienda.erp.erp_backend.dto.SaleTotals;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Creazione, modifica o cancellazione di una vendita, con il contributo della vendita ai totali
+ * prima e dopo la modifica. Viene pubblicato da SaleService e, dopo il commit, scritto nel journal
+ * e notificato agli altri componenti interessati.
+ */
+@Getter
+public class SaleChangedEvent {
+
+    /**
+     * Tipo di modifica. La posizione di ogni valore viene scritta nel journal: i nuovi tipi vanno aggiunti in fondo.
+     */
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final Type type;
+    private final long saleId;
+    private final Instant occurredAt;
+    private final SaleTotals before;
+    private final SaleTotals after;
+
+    public SaleChangedEvent(Type type, long saleId, Instant occurredAt, SaleTotals before, SaleTotals after) {
+        this.type = type;
+        this.saleId = saleId;
+        this.occurredAt = occurredAt;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static SaleChangedEvent created(long saleId, SaleTotals after) {
+        return new SaleChangedEvent(Type.CREATED, saleId, Instant.now(), null, after);
+    }
+
+    public static SaleChangedEvent updated(long saleId, SaleTotals before, SaleTotals after) {
+        return new SaleChangedEvent(Type.UPDATED, saleId, Instant.now(), before, after);
+    }
+
+    public static SaleChangedEvent deleted(long saleId, SaleTotals before) {
+        return new SaleChangedEvent(Type.DELETED, saleId, Instant.now(), before, null);
+    }
+}
@@ -0,0 +1,249 @@
+package com.azienda.erp.erp_backend.journal;
+
+import com.azienda.erp.erp_backend.dto.SaleTotals;
+import com.azienda.erp.erp_backend.money.Money;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Journal locale, in sola aggiunta, delle modifiche alle vendite.
+ * Ogni evento confermato dal commit viene scritto in segmenti mappati in memoria nella cartella configurata,
+ * senza carico aggiuntivo sul database; quando un segmento è pieno ne viene creato uno nuovo.
+ * Il journal può essere riletto per intero, ad esempio all'avvio, per ricostruire totali o cache
+ * senza rileggere le tabelle delle vendite.
+ * Gli eventi di transazioni concorrenti sono scritti nell'ordine dei commit, che può differire
+ * da quello in cui le transazioni sono iniziate.
+ */
+@Component
+public class SaleEventJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaleEventJournal.class);
+
+    private static final String SEGMENT_PREFIX = "sales-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+    private static final int TOTALS_SIZE = 5 * Long.BYTES;
+    private static final int MAX_PAYLOAD_SIZE = 3 * Long.BYTES + 2 + 2 * TOTALS_SIZE;
+    private static final byte HAS_BEFORE = 1;
+    private static final byte HAS_AFTER = 2;
+    // Importi scritti in centesimi; i record senza questo flag, scritti da versioni precedenti, li hanno in euro
+    private static final byte AMOUNTS_IN_CENTS = 4;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncOnWrite;
+    private volatile boolean enabled;
+    private final AtomicLong writeFailures = new AtomicLong();
+
+    private JournalSegment current;
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocate(MAX_PAYLOAD_SIZE);
+
+    public SaleEventJournal(@Value("${erp.journal.enabled:true}") boolean enabled,
+                            @Value("${erp.journal.directory:data/journal}") String directory,
+                            @Value("${erp.journal.segment-size-mb:64}") int segmentSizeMb,
+                            @Value("${erp.journal.sync-on-write:false}") boolean syncOnWrite) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = Math.max(MIN_SEGMENT_SIZE, (int) Math.min(Integer.MAX_VALUE, segmentSizeMb * 1024L * 1024L));
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    /**
+     * Apre l'ultimo segmento esistente, posizionandosi dopo l'ultimo record valido, o ne crea uno nuovo.
+     * Se la cartella non è utilizzabile il journal viene disattivato senza impedire l'avvio.
+     */
+    @PostConstruct
+    public synchronized void open() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = listSegments();
+            if (segments.isEmpty()) {
+                current = JournalSegment.create(segmentPath(1), 1, segmentSize);
+            } else {
+                current = JournalSegment.open(segments.get(segments.size() - 1), true);
+            }
+            logger.info("Journal delle vendite aperto in {} (prossima sequenza {})",
+                    directory.toAbsolutePath(), current.getNextSequence());
+        } catch (IOException ex) {
+            logger.error("Impossibile aprire il journal delle vendite in {}, il journal resta disattivato: ",
+                    directory.toAbsolutePath(), ex);
+            enabled = false;
+        }
+    }
+
+    /**
+     * Forza su disco le ultime scritture prima dell'arresto.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    /**
+     * Scrive nel journal un evento confermato dal commit. Un errore di scrittura viene registrato nei log
+     * senza ripercussioni sull'operazione già confermata.
+     *
+     * @param event l'evento da scrivere.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onSaleChanged(SaleChangedEvent event) {
+        try {
+            append(event);
+        } catch (IOException | RuntimeException ex) {
+            writeFailures.incrementAndGet();
+            logger.error("Errore durante la scrittura nel journal della vendita {}: ", event.getSaleId(), ex);
+        }
+    }
+
+    /**
+     * Aggiunge un evento in fondo al journal, passando a un nuovo segmento se quello corrente è pieno.
+     *
+     * @param event l'evento da scrivere.
+     * @return il numero di sequenza assegnato all'evento, o -1 se il journal è disattivato.
+     * @throws IOException se non è possibile creare un nuovo segmento.
+     */
+    public synchronized long append(SaleChangedEvent event) throws IOException {
+        if (!enabled) {
+            return -1;
+        }
+        long sequence = current.getNextSequence();
+        ByteBuffer payload = encode(sequence, event);
+        if (!current.append(payload)) {
+            current.force();
+            current = JournalSegment.create(segmentPath(sequence), sequence, segmentSize);
+            current.append(payload);
+        }
+        if (syncOnWrite) {
+            current.force();
+        }
+        return sequence;
+    }
+
+    /**
+     * Rilegge tutti gli eventi del journal, dal più vecchio al più recente.
+     *
+     * @param consumer il destinatario degli eventi.
+     * @return il numero di eventi letti.
+     * @throws IOException se un segmento non può essere letto.
+     */
+    public synchronized long replay(Consumer<SaleChangedEvent> consumer) throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        long count = 0;
+        for (Path path : listSegments()) {
+            JournalSegment segment = path.equals(current.getPath()) ? current : JournalSegment.open(path, false);
+            count += segment.read(payload -> consumer.accept(decode(payload)));
+        }
+        return count;
+    }
+
+    /**
+     * Indica se il journal è attivo. Un journal disattivato non scrive eventi e ne rilegge zero.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Restituisce il numero di eventi che dall'avvio non è stato possibile scrivere nel journal.
+     * Se è maggiore di zero il journal non contiene tutte le modifiche confermate.
+     */
+    public long getWriteFailures() {
+        return writeFailures.get();
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long baseSequence) {
+        // Numero a 20 cifre: l'ordine alfabetico dei file coincide con quello delle sequenze
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, baseSequence, SEGMENT_SUFFIX));
+    }
+
+    private ByteBuffer encode(long sequence, SaleChangedEvent event) {
+        ByteBuffer buffer = encodeBuffer.clear();
+        buffer.putLong(sequence);
+        buffer.put((byte) event.getType().ordinal());
+        buffer.putLong(event.getSaleId());
+        buffer.putLong(event.getOccurredAt().toEpochMilli());
+        byte flags = AMOUNTS_IN_CENTS;
+        if (event.getBefore() != null) {
+            flags |= HAS_BEFORE;
+        }
+        if (event.getAfter() != null) {
+            flags |= HAS_AFTER;
+        }
+        buffer.put(flags);
+        if (event.getBefore() != null) {
+            putTotals(buffer, event.getBefore());
+        }
+        if (event.getAfter() != null) {
+            putTotals(buffer, event.getAfter());
+        }
+        return buffer.flip();
+    }
+
+    private static SaleChangedEvent decode(ByteBuffer payload) {
+        payload.getLong(); // sequenza, già verificata dal segmento
+        SaleChangedEvent.Type type = SaleChangedEvent.Type.values()[payload.get()];
+        long saleId = payload.getLong();
+        Instant occurredAt = Instant.ofEpochMilli(payload.getLong());
+        byte flags = payload.get();
+        boolean cents = (flags & AMOUNTS_IN_CENTS) != 0;
+        SaleTotals before = (flags & HAS_BEFORE) != 0 ? getTotals(payload, cents) : null;
+        SaleTotals after = (flags & HAS_AFTER) != 0 ? getTotals(payload, cents) : null;
+        return new SaleChangedEvent(type, saleId, occurredAt, before, after);
+    }
+
+    private static void putTotals(ByteBuffer buffer, SaleTotals totals) {
+        buffer.putLong(totals.getDay().toEpochDay());
+        buffer.putLong(totals.getRevenueCents());
+        buffer.putLong(totals.getNetProfitCents());
+        buffer.putLong(totals.getDiscountCents());
+        buffer.putLong(totals.getUnits());
+    }
+
+    private static SaleTotals getTotals(ByteBuffer buffer, boolean cents) {
+        LocalDate day = LocalDate.ofEpochDay(buffer.getLong());
+        long revenueCents = getAmount(buffer, cents);
+        long netProfitCents = getAmount(buffer, cents);
+        long discountCents = getAmount(buffer, cents);
+        return new SaleTotals(day, revenueCents, netProfitCents, discountCents, buffer.getLong());
+    }
+
+    private static long getAmount(ByteBuffer buffer, boolean cents) {
+        return cents ? buffer.getLong() : Money.toCents(buffer.getDouble());
+    }
+}
@@ -0,0 +1,65 @@
+package com.azienda.erp.erp_backend.money;
+
+/**
+ * Aritmetica a virgola fissa sugli importi in euro, rappresentati come centesimi in un long.
+ * Tutti i metodi lavorano su tipi primitivi e non allocano oggetti, quindi possono essere usati
+ * nei cicli sulle righe di vendita. Le somme in centesimi sono esatte e non dipendono dall'ordine
+ * degli addendi; la conversione in double avviene una sola volta, sul risultato.
+ * Le operazioni segnalano un overflow con {@link ArithmeticException} invece di restituire importi errati.
+ */
+public final class Money {
+
+    public static final long CENTS_PER_EURO = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Converte un importo in euro nei centesimi più vicini, arrotondando le metà lontano dallo zero.
+     *
+     * @param amount l'importo in euro.
+     * @return l'importo in centesimi.
+     */
+    public static long toCents(double amount) {
+        return amount < 0 ? -Math.round(-amount * CENTS_PER_EURO) : Math.round(amount * CENTS_PER_EURO);
+    }
+
+    /**
+     * Converte un importo in centesimi in euro.
+     *
+     * @param cents l'importo in centesimi.
+     * @return il double più vicino all'importo esatto in euro.
+     */
+    public static double toEuros(long cents) {
+        return (double) cents / CENTS_PER_EURO;
+    }
+
+    /**
+     * Arrotonda un importo in euro al centesimo.
+     *
+     * @param amount l'importo in euro.
+     * @return l'importo arrotondato.
+     */
+    public static double round(double amount) {
+        return toEuros(toCents(amount));
+    }
+
+    public static long add(long cents, long otherCents) {
+        return Math.addExact(cents, otherCents);
+    }
+
+    public static long subtract(long cents, long otherCents) {
+        return Math.subtractExact(cents, otherCents);
+    }
+
+    /**
+     * Moltiplica un prezzo unitario per una quantità.
+     *
+     * @param unitCents il prezzo unitario in centesimi.
+     * @param quantity la quantità.
+     * @return il totale in centesimi.
+     */
+    public static long multiply(long unitCents, long quantity) {
+        return Math.multiplyExact(unitCents, quantity);
+    }
+}
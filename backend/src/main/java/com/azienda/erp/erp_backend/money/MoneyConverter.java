@@ -0,0 +1,23 @@
+package com.azienda.erp.erp_backend.money;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Converter JPA per gli importi in euro: arrotonda al centesimo sia in scrittura sia in lettura.
+ * Le colonne restano numeriche in euro, quindi i dati esistenti e le API non cambiano, ma ogni importo
+ * salvato o caricato è esattamente un numero intero di centesimi, come quelli calcolati con {@link Money}.
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Double, Double> {
+
+    @Override
+    public Double convertToDatabaseColumn(Double amount) {
+        return amount != null ? Money.round(amount) : null;
+    }
+
+    @Override
+    public Double convertToEntityAttribute(Double amount) {
+        return amount != null ? Money.round(amount) : null;
+    }
+}
@@ -0,0 +1,90 @@
+package com.azienda.erp.erp_backend.repository;
+
+import com.azienda.erp.erp_backend.entity.IdSequences;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Id;
+import jakarta.persistence.TableGenerator;
+import jakarta.persistence.metamodel.EntityType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Field;
+
+/**
+ * Allinea all'avvio i contatori di {@link IdSequences} agli ID già presenti nelle tabelle.
+ * Serve per i database creati quando gli ID erano generati con AUTO_INCREMENT: senza allineamento
+ * il primo blocco allocato ripartirebbe da ID già usati. Viene eseguito prima dell'avvio del server web,
+ * quindi prima di qualsiasi insert.
+ */
+@Component
+public class IdSequenceInitializer implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdSequenceInitializer.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdSequenceInitializer(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            for (EntityType<?> entityType : entityManagerFactory.getMetamodel().getEntities()) {
+                Field idField = findIdField(entityType.getJavaType());
+                TableGenerator generator = idField != null ? idField.getAnnotation(TableGenerator.class) : null;
+                if (generator == null) {
+                    continue;
+                }
+                Long maxId = entityManager.createQuery(
+                        "SELECT MAX(e." + idField.getName() + ") FROM " + entityType.getName() + " e", Long.class)
+                        .getSingleResult();
+                // L'ottimizzatore pooled assegna gli ID fino a (valore letto - allocationSize + 1),
+                // quindi il contatore deve superare l'ID massimo di almeno un blocco
+                long floor = (maxId != null ? maxId : 0L) + generator.allocationSize();
+                align(generator, floor);
+            }
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void align(TableGenerator generator, long floor) {
+        String table = generator.table();
+        String nameColumn = generator.pkColumnName();
+        String valueColumn = generator.valueColumnName();
+        String sequence = generator.pkColumnValue();
+
+        int updated = jdbcTemplate.update("UPDATE " + table + " SET " + valueColumn + " = ? WHERE "
+                + nameColumn + " = ? AND " + valueColumn + " < ?", floor, sequence, floor);
+        if (updated > 0) {
+            logger.info("Contatore ID '{}' allineato a {}", sequence, floor);
+            return;
+        }
+        Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE "
+                + nameColumn + " = ?", Integer.class, sequence);
+        if (rows != null && rows == 0) {
+            jdbcTemplate.update("INSERT INTO " + table + " (" + nameColumn + ", " + valueColumn + ") VALUES (?, ?)",
+                    sequence, floor);
+            logger.info("Contatore ID '{}' inizializzato a {}", sequence, floor);
+        }
+    }
+
+    private static Field findIdField(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Id.class)) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.azienda.erp.erp_backend.repository;
+
+import com.azienda.erp.erp_backend.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Registra una chiave di idempotenza con un'insert semplice: se la chiave esiste già
+     * il vincolo di chiave primaria fa fallire l'istruzione, senza una lettura preventiva.
+     *
+     * @param key la chiave ricevuta dal client.
+     * @param saleId l'ID della vendita creata con la chiave.
+     * @param createdAt l'istante di registrazione.
+     * @param requestHash l'impronta del contenuto della richiesta.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_record (idempotency_key, sale_id, created_at, request_hash) " +
+            "VALUES (:key, :saleId, :createdAt, :requestHash)", nativeQuery = true)
+    void insert(@Param("key") String key, @Param("saleId") Long saleId, @Param("createdAt") Instant createdAt,
+                @Param("requestHash") String requestHash);
+
+    /**
+     * Elimina le chiavi registrate prima dell'istante indicato.
+     *
+     * @param threshold l'istante limite, escluso.
+     * @return il numero di chiavi eliminate.
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :threshold")
+    int deleteCreatedBefore(@Param("threshold") Instant threshold);
+}
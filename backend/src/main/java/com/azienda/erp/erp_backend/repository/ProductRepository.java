@@ -1,9 +1,23 @@
 package com.azienda.erp.erp_backend.repository;
 
+import com.azienda.erp.erp_backend.dto.CatalogProduct;
 import com.azienda.erp.erp_backend.entity.Product;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
 
     /**
      * Trova un prodotto tramite il suo barcode.
@@ -12,4 +26,71 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
      * @return il prodotto con il barcode specificato, o null se non esiste alcun prodotto.
      */
     Product findByBarcode(Long barcode);
-}
\ No newline at end of file
+
+    /**
+     * Trova con un'unica query tutti i prodotti con i barcode indicati.
+     *
+     * @param barcodes i codici a barre da cercare.
+     * @return i prodotti trovati; i barcode senza prodotto corrispondente vengono ignorati.
+     */
+    List<Product> findByBarcodeIn(Collection<Long> barcodes);
+
+    /**
+     * Trova con un'unica query i dati di catalogo dei prodotti con i barcode indicati.
+     *
+     * @param barcodes i codici a barre da cercare.
+     * @return i prodotti trovati; i barcode senza prodotto corrispondente vengono ignorati.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.CatalogProduct(p.id, p.barcode, p.name, p.supplier.id, " +
+            "p.purchasePrice, p.sellingPrice) FROM Product p WHERE p.barcode IN :barcodes")
+    List<CatalogProduct> findCatalogByBarcodeIn(@Param("barcodes") Collection<Long> barcodes);
+
+    /**
+     * Scorre i dati di catalogo di tutti i prodotti senza caricare le entità, per il catalogo in memoria.
+     * Va consumato all'interno di una transazione e chiuso al termine.
+     *
+     * @return lo stream di tutti i prodotti.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.CatalogProduct(p.id, p.barcode, p.name, p.supplier.id, " +
+            "p.purchasePrice, p.sellingPrice) FROM Product p")
+    Stream<CatalogProduct> streamCatalog();
+
+    /**
+     * Trova i prodotti con i barcode indicati bloccandoli in scrittura fino alla fine della transazione.
+     * I lock vengono acquisiti in ordine di ID, come per gli aggiornamenti di magazzino delle singole vendite.
+     *
+     * @param barcodes i codici a barre da cercare.
+     * @return i prodotti trovati, ordinati per ID.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.barcode IN :barcodes ORDER BY p.id")
+    List<Product> findByBarcodeInForUpdate(@Param("barcodes") Collection<Long> barcodes);
+
+    /**
+     * Scala la quantità disponibile di un prodotto solo se è sufficiente, con un'unica istruzione atomica.
+     * Evita la lettura seguita da scrittura, che con più casse concorrenti perderebbe aggiornamenti.
+     *
+     * @param id l'ID del prodotto.
+     * @param quantity la quantità da scalare.
+     * @return 1 se la quantità è stata scalata, 0 se la disponibilità non era sufficiente.
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.quantity = p.quantity - :quantity WHERE p.id = :id AND p.quantity >= :quantity")
+    int decrementQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Incrementa la quantità disponibile di un prodotto con un'unica istruzione atomica.
+     *
+     * @param id l'ID del prodotto.
+     * @param quantity la quantità da aggiungere.
+     * @return il numero di righe aggiornate.
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.quantity = p.quantity + :quantity WHERE p.id = :id")
+    int incrementQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+}
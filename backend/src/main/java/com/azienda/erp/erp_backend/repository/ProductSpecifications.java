@@ -0,0 +1,62 @@
+package com.azienda.erp.erp_backend.repository;
+
+import com.azienda.erp.erp_backend.dto.ProductSearchFilter;
+import com.azienda.erp.erp_backend.entity.Product;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Specification per la ricerca dei prodotti, composte a partire dai filtri della richiesta.
+ */
+public final class ProductSpecifications {
+
+    private ProductSpecifications() {
+    }
+
+    /**
+     * Costruisce la Specification che applica tutti i filtri valorizzati e carica il fornitore
+     * con la stessa query, senza una query aggiuntiva per ogni fornitore della pagina.
+     * Il nome è confrontato come prefisso sulla colonna senza trasformazioni, così MySQL usa l'indice sul nome
+     * con una scansione per intervallo; maiuscole e minuscole si equivalgono grazie alla collation
+     * case-insensitive predefinita (utf8mb4_0900_ai_ci). Una ricerca del testo in qualsiasi punto del nome
+     * richiederebbe invece di leggere tutta la tabella.
+     *
+     * @param filter i filtri della ricerca.
+     * @return la Specification corrispondente.
+     */
+    public static Specification<Product> matching(ProductSearchFilter filter) {
+        return (root, query, cb) -> {
+            // La query di conteggio della pagina non carica il fornitore
+            if (!Long.class.equals(query.getResultType()) && !long.class.equals(query.getResultType())) {
+                root.fetch("supplier", JoinType.INNER);
+            }
+
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.getName() != null && !filter.getName().isBlank()) {
+                String pattern = escapeLike(filter.getName().trim()) + "%";
+                predicates.add(cb.like(root.get("name"), pattern, '\\'));
+            }
+            if (filter.getSupplierId() != null) {
+                predicates.add(cb.equal(root.get("supplier").get("id"), filter.getSupplierId()));
+            }
+            if (filter.getStockBelow() != null) {
+                predicates.add(cb.lessThan(root.get("quantity"), filter.getStockBelow()));
+            }
+            if (filter.getMinPrice() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("sellingPrice"), filter.getMinPrice()));
+            }
+            if (filter.getMaxPrice() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("sellingPrice"), filter.getMaxPrice()));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
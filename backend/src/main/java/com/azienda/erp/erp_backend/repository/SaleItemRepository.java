@@ -0,0 +1,86 @@
+package com.azienda.erp.erp_backend.repository;
+
+import com.azienda.erp.erp_backend.dto.SaleLineRow;
+import com.azienda.erp.erp_backend.dto.SupplierProfitability;
+import com.azienda.erp.erp_backend.dto.TopSellingProduct;
+import com.azienda.erp.erp_backend.entity.SaleItem;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface SaleItemRepository extends JpaRepository<SaleItem, Long> {
+
+    /**
+     * Classifica i prodotti per pezzi venduti tra i giorni locali indicati, estremi inclusi.
+     * L'aggregazione avviene nel database, raggruppando gli articoli per prodotto.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @param limit il numero di prodotti da restituire.
+     * @return i prodotti più venduti per pezzi, a parità ordinati per ID.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.TopSellingProduct(p.id, p.barcode, p.name, " +
+            "SUM(i.quantitySold), " +
+            "SUM(CAST(ROUND(i.sellingPrice * 100, 0) AS Long)), " +
+            "SUM(CAST(ROUND(i.sellingPrice * 100, 0) AS Long)) - SUM(CAST(ROUND(i.purchasePrice * 100, 0) AS Long))) " +
+            "FROM SaleItem i JOIN i.sale s JOIN i.product p WHERE s.saleLocalDate BETWEEN :from AND :to " +
+            "GROUP BY p.id, p.barcode, p.name ORDER BY SUM(i.quantitySold) DESC, p.id")
+    List<TopSellingProduct> findTopByUnits(@Param("from") LocalDate from, @Param("to") LocalDate to, Limit limit);
+
+    /**
+     * Classifica i prodotti per incasso tra i giorni locali indicati, estremi inclusi.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @param limit il numero di prodotti da restituire.
+     * @return i prodotti con l'incasso più alto, a parità ordinati per ID.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.TopSellingProduct(p.id, p.barcode, p.name, " +
+            "SUM(i.quantitySold), " +
+            "SUM(CAST(ROUND(i.sellingPrice * 100, 0) AS Long)), " +
+            "SUM(CAST(ROUND(i.sellingPrice * 100, 0) AS Long)) - SUM(CAST(ROUND(i.purchasePrice * 100, 0) AS Long))) " +
+            "FROM SaleItem i JOIN i.sale s JOIN i.product p WHERE s.saleLocalDate BETWEEN :from AND :to " +
+            "GROUP BY p.id, p.barcode, p.name ORDER BY SUM(CAST(ROUND(i.sellingPrice * 100, 0) AS Long)) DESC, p.id")
+    List<TopSellingProduct> findTopByRevenue(@Param("from") LocalDate from, @Param("to") LocalDate to, Limit limit);
+
+    /**
+     * Calcola pezzi venduti, incasso e costo d'acquisto per fornitore tra i giorni locali indicati, estremi inclusi.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return i totali dei fornitori con almeno un prodotto venduto nel periodo.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.SupplierProfitability(sup.id, sup.name, " +
+            "SUM(i.quantitySold), " +
+            "SUM(CAST(ROUND(i.sellingPrice * 100, 0) AS Long)), SUM(CAST(ROUND(i.purchasePrice * 100, 0) AS Long))) " +
+            "FROM SaleItem i JOIN i.sale s JOIN i.product p JOIN p.supplier sup " +
+            "WHERE s.saleLocalDate BETWEEN :from AND :to GROUP BY sup.id, sup.name")
+    List<SupplierProfitability> sumBySupplierBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Scorre tutte le righe di vendita con i dati usati dal cubo delle vendite, senza caricare le entità.
+     * La dimensione di fetch {@link Integer#MIN_VALUE} fa sì che il driver MySQL trasmetta le righe una alla volta.
+     * Va consumato all'interno di una transazione e chiuso al termine.
+     *
+     * @return lo stream di tutte le righe di vendita.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.SaleLineRow(s.saleDate, s.paymentMethods, p.id, p.supplier.id, " +
+            "i.quantitySold, i.sellingPrice, i.purchasePrice) " +
+            "FROM SaleItem i JOIN i.sale s JOIN i.product p")
+    Stream<SaleLineRow> streamAllLines();
+}
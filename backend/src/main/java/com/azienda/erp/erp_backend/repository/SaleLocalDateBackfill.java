@@ -0,0 +1,52 @@
+package com.azienda.erp.erp_backend.repository;
+
+import com.azienda.erp.erp_backend.entity.Sale;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Completa all'avvio giorno e ora locali delle vendite registrate prima che le colonne esistessero.
+ * Le vendite vengono aggiornate a blocchi, ognuno nella propria transazione, così anche uno storico ampio
+ * non tiene aperta un'unica transazione lunga. Viene eseguito prima dell'avvio del server web,
+ * quindi le query per giorno e mese trovano già tutte le vendite.
+ */
+@Component
+public class SaleLocalDateBackfill implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaleLocalDateBackfill.class);
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final SaleRepository saleRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public SaleLocalDateBackfill(SaleRepository saleRepository, PlatformTransactionManager transactionManager) {
+        this.saleRepository = saleRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long total = 0;
+        int updated;
+        do {
+            updated = transactionTemplate.execute(status -> {
+                List<Sale> sales = saleRepository.findBySaleLocalDateIsNull(Limit.of(CHUNK_SIZE));
+                sales.forEach(Sale::syncLocalDate);
+                return sales.size();
+            });
+            total += updated;
+        } while (updated == CHUNK_SIZE);
+
+        if (total > 0) {
+            logger.info("Giorno e ora locali completati per {} vendite", total);
+        }
+    }
+}
@@ -1,35 +1,256 @@
 package com.azienda.erp.erp_backend.repository;
 
+import com.azienda.erp.erp_backend.dto.CalendarFacet;
+import com.azienda.erp.erp_backend.dto.SaleExportRow;
+import com.azienda.erp.erp_backend.dto.SaleRow;
+import com.azienda.erp.erp_backend.dto.SaleTotals;
+import com.azienda.erp.erp_backend.dto.DailySaleCount;
+import com.azienda.erp.erp_backend.dto.SalesGrandTotals;
+import com.azienda.erp.erp_backend.dto.SalesSeriesPoint;
+import com.azienda.erp.erp_backend.dto.SalesSummary;
 import com.azienda.erp.erp_backend.entity.Sale;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface SaleRepository extends JpaRepository<Sale, Long> {
 
+    /**
+     * Recupera tutte le vendite con righe, prodotti e fornitori in un'unica query.
+     *
+     * @return un elenco di tutte le vendite.
+     */
+    @Override
+    @EntityGraph(Sale.WITH_ITEMS_GRAPH)
+    List<Sale> findAll();
+
+    /**
+     * Recupera la vendita con l'ID specificato insieme a righe, prodotti e fornitori.
+     *
+     * @param id l'ID della vendita.
+     * @return la vendita, se presente.
+     */
+    @EntityGraph(Sale.WITH_ITEMS_GRAPH)
+    Optional<Sale> findWithItemsById(Long id);
+
+    /**
+     * Recupera le vendite con gli ID specificati insieme a righe, prodotti e fornitori.
+     * L'ordine del risultato non è garantito.
+     *
+     * @param ids gli ID delle vendite da recuperare.
+     * @return le vendite trovate.
+     */
+    @EntityGraph(Sale.WITH_ITEMS_GRAPH)
+    List<Sale> findWithItemsByIdIn(Collection<Long> ids);
+
+    /**
+     * Recupera le vendite già registrate con gli identificativi di terminale indicati.
+     *
+     * @param clientRefs gli identificativi assegnati dai terminali.
+     * @return le vendite trovate.
+     */
+    List<Sale> findByClientRefIn(Collection<String> clientRefs);
+
     /**
      * Recupera tutte le vendite ordinate per data di vendita in ordine discendente.
      *
      * @return un elenco di tutte le vendite ordinate per data di vendita in ordine discendente.
      */
+    @EntityGraph(Sale.WITH_ITEMS_GRAPH)
     List<Sale> findAllByOrderBySaleDateDesc();
 
     /**
-     * Recupera le prime 12 vendite ordinate per data di vendita in ordine discendente.
+     * Recupera le righe di elenco delle vendite più recenti, ordinate per data e ID in ordine discendente,
+     * senza caricare gli articoli.
+     *
+     * @param limit il numero massimo di vendite da restituire.
+     * @return le vendite più recenti.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.SaleRow(s.id, s.saleDate, s.totalPrice, s.netProfit, " +
+            "s.discount, s.paymentMethods, s.totalProducts) FROM Sale s ORDER BY s.saleDate DESC, s.id DESC")
+    List<SaleRow> findLatestRows(Limit limit);
+
+    /**
+     * Recupera le righe di elenco, senza articoli, delle vendite dei giorni locali indicati, estremi inclusi,
+     * ordinate per data e ID in ordine discendente. Filtro e ordinamento usano l'indice su
+     * (saleLocalDate, saleDate, id), quindi un singolo giorno si legge senza ordinamenti aggiuntivi.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return le vendite dei giorni indicati.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.SaleRow(s.id, s.saleDate, s.totalPrice, s.netProfit, " +
+            "s.discount, s.paymentMethods, s.totalProducts) FROM Sale s " +
+            "WHERE s.saleLocalDate BETWEEN :from AND :to ORDER BY s.saleDate DESC, s.id DESC")
+    List<SaleRow> findRowsBySaleLocalDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Recupera un blocco di vendite ancora prive di giorno e ora locali, per completarle.
+     *
+     * @param limit il numero massimo di vendite da restituire.
+     * @return le vendite da completare.
+     */
+    List<Sale> findBySaleLocalDateIsNull(Limit limit);
+
+    /**
+     * Recupera gli ID della prima pagina dell'archivio vendite nell'intervallo indicato,
+     * ordinati per data e ID in ordine discendente.
+     *
+     * @param from l'inizio dell'intervallo (incluso).
+     * @param to la fine dell'intervallo (esclusa).
+     * @param limit il numero massimo di vendite da restituire.
+     * @return gli ID delle vendite della prima pagina.
+     */
+    @Query("SELECT s.id FROM Sale s WHERE s.saleDate >= :from AND s.saleDate < :to " +
+            "ORDER BY s.saleDate DESC, s.id DESC")
+    List<Long> findArchivePageIds(@Param("from") ZonedDateTime from,
+                                  @Param("to") ZonedDateTime to,
+                                  Limit limit);
+
+    /**
+     * Recupera gli ID della pagina dell'archivio vendite che segue il cursore (saleDate, id) indicato.
+     * La condizione sulla coppia ordinata permette al database di riprendere la scansione dall'indice
+     * senza scorrere le righe delle pagine precedenti.
+     *
+     * @param from l'inizio dell'intervallo (incluso).
+     * @param to la fine dell'intervallo (esclusa).
+     * @param cursorDate la data dell'ultima vendita della pagina precedente.
+     * @param cursorId l'ID dell'ultima vendita della pagina precedente.
+     * @param limit il numero massimo di vendite da restituire.
+     * @return gli ID delle vendite della pagina successiva al cursore.
+     */
+    @Query("SELECT s.id FROM Sale s WHERE s.saleDate >= :from AND s.saleDate < :to " +
+            "AND (s.saleDate < :cursorDate OR (s.saleDate = :cursorDate AND s.id < :cursorId)) " +
+            "ORDER BY s.saleDate DESC, s.id DESC")
+    List<Long> findArchivePageIdsAfter(@Param("from") ZonedDateTime from,
+                                       @Param("to") ZonedDateTime to,
+                                       @Param("cursorDate") ZonedDateTime cursorDate,
+                                       @Param("cursorId") Long cursorId,
+                                       Limit limit);
+
+    /**
+     * Conta le vendite per anno locale, dal più recente. La query legge solo l'indice su saleLocalDate.
+     *
+     * @return gli anni con almeno una vendita e il relativo numero di vendite.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.CalendarFacet(YEAR(s.saleLocalDate), COUNT(s)) FROM Sale s " +
+            "GROUP BY YEAR(s.saleLocalDate) ORDER BY YEAR(s.saleLocalDate) DESC")
+    List<CalendarFacet> countByYear();
+
+    /**
+     * Conta le vendite per mese locale tra i giorni indicati, che di norma coprono un anno.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return i mesi con almeno una vendita e il relativo numero di vendite.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.CalendarFacet(MONTH(s.saleLocalDate), COUNT(s)) FROM Sale s " +
+            "WHERE s.saleLocalDate BETWEEN :from AND :to " +
+            "GROUP BY MONTH(s.saleLocalDate) ORDER BY MONTH(s.saleLocalDate)")
+    List<CalendarFacet> countByMonthBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Conta le vendite per giorno del mese tra i giorni indicati, che di norma coprono un mese.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return i giorni con almeno una vendita e il relativo numero di vendite.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.CalendarFacet(DAY(s.saleLocalDate), COUNT(s)) FROM Sale s " +
+            "WHERE s.saleLocalDate BETWEEN :from AND :to " +
+            "GROUP BY DAY(s.saleLocalDate) ORDER BY DAY(s.saleLocalDate)")
+    List<CalendarFacet> countByDayBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Calcola numero di vendite, incasso e profitto netto tra i giorni locali indicati
+     * con un'unica query di aggregazione.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return il riepilogo delle vendite del periodo.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.SalesSummary(COUNT(s), " +
+            "SUM(CAST(ROUND(s.totalPrice * 100, 0) AS Long)), SUM(CAST(ROUND(s.netProfit * 100, 0) AS Long))) " +
+            "FROM Sale s WHERE s.saleLocalDate BETWEEN :from AND :to")
+    SalesSummary summarizeBySaleLocalDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Aggrega per ora locale le vendite tra due giorni, estremi inclusi. Gli importi sono sommati in centesimi.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return un punto per ogni ora con almeno una vendita, in ordine cronologico.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.SalesSeriesPoint(s.saleLocalDate, s.saleHour, COUNT(s), " +
+            "SUM(CAST(ROUND(s.totalPrice * 100, 0) AS Long)), SUM(CAST(ROUND(s.netProfit * 100, 0) AS Long))) " +
+            "FROM Sale s WHERE s.saleLocalDate BETWEEN :from AND :to " +
+            "GROUP BY s.saleLocalDate, s.saleHour ORDER BY s.saleLocalDate, s.saleHour")
+    List<SalesSeriesPoint> sumByLocalHourBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Calcola numero di vendite, importi in centesimi e pezzi venduti di tutte le vendite registrate
+     * con un'unica query di aggregazione.
+     *
+     * @return i totali complessivi delle vendite.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.SalesGrandTotals(COUNT(s), " +
+            "SUM(CAST(ROUND(s.totalPrice * 100, 0) AS Long)), SUM(CAST(ROUND(s.netProfit * 100, 0) AS Long)), " +
+            "SUM(CAST(ROUND(s.discount * 100, 0) AS Long)), SUM(s.totalProducts)) FROM Sale s")
+    SalesGrandTotals sumAllTotals();
+
+    /**
+     * Conta le vendite registrate in ogni giorno locale, leggendo solo l'indice sul giorno.
+     *
+     * @return il numero di vendite di ogni giorno con almeno una vendita.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.DailySaleCount(s.saleLocalDate, COUNT(s)) FROM Sale s " +
+            "GROUP BY s.saleLocalDate")
+    List<DailySaleCount> countByLocalDate();
+
+    /**
+     * Scorre i totali di tutte le vendite senza caricare le entità, per ricostruire i totali giornalieri.
+     * Va consumato all'interno di una transazione e chiuso al termine.
      *
-     * @return un elenco delle prime 12 vendite ordinate per data di vendita in ordine discendente.
+     * @return lo stream dei contributi di tutte le vendite.
      */
-    List<Sale> findTop12ByOrderBySaleDateDesc();
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.SaleTotals(s.saleDate, s.totalPrice, s.netProfit, s.discount, s.totalProducts) " +
+            "FROM Sale s")
+    Stream<SaleTotals> streamAllTotals();
 
     /**
-     * Recupera tutte le vendite tra l'inizio e la fine della giornata specificata.
+     * Scorre le righe dell'esportazione vendite nell'intervallo indicato, un articolo per riga,
+     * ordinate per data e ID di vendita. La dimensione di fetch {@link Integer#MIN_VALUE} fa sì che il driver MySQL
+     * trasmetta le righe una alla volta invece di caricare l'intero risultato in memoria.
+     * Va consumato all'interno di una transazione e chiuso al termine.
      *
-     * @param startOfDay l'inizio della giornata per filtrare le vendite.
-     * @param endOfDay la fine della giornata per filtrare le vendite.
-     * @return un elenco di tutte le vendite con una data di vendita compresa tra l'inizio e la fine della giornata specificata.
+     * @param from l'inizio dell'intervallo (incluso).
+     * @param to la fine dell'intervallo (esclusa).
+     * @return lo stream delle righe da esportare.
      */
-    List<Sale> findBySaleDateBetween(ZonedDateTime startOfDay, ZonedDateTime endOfDay);
-}
\ No newline at end of file
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.SaleExportRow(s.id, s.saleDate, s.totalPrice, s.netProfit, " +
+            "s.discount, s.paymentMethods, s.note, s.totalProducts, i.id, p.barcode, p.name, i.quantitySold, " +
+            "i.sellingPrice, i.purchasePrice) " +
+            "FROM Sale s LEFT JOIN s.saleItems i LEFT JOIN i.product p " +
+            "WHERE s.saleDate >= :from AND s.saleDate < :to " +
+            "ORDER BY s.saleDate, s.id, i.id")
+    Stream<SaleExportRow> streamExportRows(@Param("from") ZonedDateTime from, @Param("to") ZonedDateTime to);
+}
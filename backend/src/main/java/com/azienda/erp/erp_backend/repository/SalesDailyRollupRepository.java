@@ -0,0 +1,39 @@
+package com.azienda.erp.erp_backend.repository;
+
+import com.azienda.erp.erp_backend.dto.MonthlySalesRollup;
+import com.azienda.erp.erp_backend.entity.SalesDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SalesDailyRollupRepository extends JpaRepository<SalesDailyRollup, LocalDate>,
+        SalesDailyRollupRepositoryCustom {
+
+    /**
+     * Recupera i totali giornalieri compresi tra due giorni, estremi inclusi.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return le righe giornaliere ordinate per giorno.
+     */
+    List<SalesDailyRollup> findByDayBetweenOrderByDayAsc(LocalDate from, LocalDate to);
+
+    /**
+     * Somma le righe giornaliere per mese tra due giorni, estremi inclusi. Gli importi sono sommati in centesimi.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return i totali mensili ordinati per anno e mese.
+     */
+    @Query("SELECT new com.azienda.erp.erp_backend.dto.MonthlySalesRollup(YEAR(r.day), MONTH(r.day), " +
+            "SUM(r.saleCount), SUM(CAST(ROUND(r.revenue * 100, 0) AS Long)), SUM(CAST(ROUND(r.netProfit * 100, 0) AS Long)), " +
+            "SUM(CAST(ROUND(r.discount * 100, 0) AS Long)), SUM(r.units)) " +
+            "FROM SalesDailyRollup r WHERE r.day BETWEEN :from AND :to " +
+            "GROUP BY YEAR(r.day), MONTH(r.day) ORDER BY YEAR(r.day), MONTH(r.day)")
+    List<MonthlySalesRollup> findMonthlyBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
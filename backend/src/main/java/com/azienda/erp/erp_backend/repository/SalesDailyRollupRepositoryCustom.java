@@ -0,0 +1,26 @@
+package com.azienda.erp.erp_backend.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Operazioni sui totali giornalieri che richiedono SQL specifico del database.
+ */
+public interface SalesDailyRollupRepositoryCustom {
+
+    /**
+     * Applica una variazione ai totali di un giorno, creando la riga se non esiste ancora.
+     * L'aggiornamento avviene in un'unica istruzione atomica, quindi scritture concorrenti sullo stesso giorno
+     * non perdono incrementi. Le variazioni arrivano in centesimi e sono convertite in euro solo per la scrittura;
+     * gli importi risultanti sono arrotondati al centesimo, così le somme ripetute non accumulano errori
+     * di arrotondamento.
+     *
+     * @param day il giorno da aggiornare.
+     * @param saleCount la variazione del numero di vendite.
+     * @param revenueCents la variazione dell'incasso, in centesimi.
+     * @param netProfitCents la variazione del profitto netto, in centesimi.
+     * @param discountCents la variazione degli sconti applicati, in centesimi.
+     * @param units la variazione dei pezzi venduti.
+     */
+    void applyDelta(LocalDate day, long saleCount, long revenueCents, long netProfitCents, long discountCents,
+                    long units);
+}
@@ -0,0 +1,71 @@
+package com.azienda.erp.erp_backend.repository;
+
+import com.azienda.erp.erp_backend.money.Money;
+import jakarta.persistence.EntityManager;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MariaDBDialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.time.LocalDate;
+
+/**
+ * Implementa l'upsert dei totali giornalieri. Su MySQL 8.0.19 e successivi i valori inseriti sono letti
+ * tramite l'alias di riga, perché la funzione VALUES() nella clausola ON DUPLICATE KEY UPDATE è deprecata
+ * dalla 8.0.20; MariaDB, le versioni precedenti di MySQL e H2 in modalità MySQL non supportano l'alias
+ * e continuano a usare VALUES().
+ */
+public class SalesDailyRollupRepositoryCustomImpl implements SalesDailyRollupRepositoryCustom {
+
+    private static final String INSERT = "INSERT INTO sales_daily_rollup "
+            + "(sale_day, sale_count, revenue, net_profit, discount, units) "
+            + "VALUES (:day, :saleCount, :revenue, :netProfit, :discount, :units) ";
+
+    private static final String ROW_ALIAS_UPSERT = INSERT + "AS new ON DUPLICATE KEY UPDATE "
+            + "sale_count = sale_count + new.sale_count, "
+            + "revenue = ROUND(revenue + new.revenue, 2), net_profit = ROUND(net_profit + new.net_profit, 2), "
+            + "discount = ROUND(discount + new.discount, 2), units = units + new.units";
+
+    private static final String VALUES_UPSERT = INSERT + "ON DUPLICATE KEY UPDATE "
+            + "sale_count = sale_count + VALUES(sale_count), "
+            + "revenue = ROUND(revenue + VALUES(revenue), 2), net_profit = ROUND(net_profit + VALUES(net_profit), 2), "
+            + "discount = ROUND(discount + VALUES(discount), 2), units = units + VALUES(units)";
+
+    private final EntityManager entityManager;
+
+    private volatile String upsert;
+
+    public SalesDailyRollupRepositoryCustomImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public void applyDelta(LocalDate day, long saleCount, long revenueCents, long netProfitCents,
+                           long discountCents, long units) {
+        entityManager.createNativeQuery(upsert())
+                .setParameter("day", day)
+                .setParameter("saleCount", saleCount)
+                .setParameter("revenue", Money.toEuros(revenueCents))
+                .setParameter("netProfit", Money.toEuros(netProfitCents))
+                .setParameter("discount", Money.toEuros(discountCents))
+                .setParameter("units", units)
+                .executeUpdate();
+    }
+
+    private String upsert() {
+        String statement = upsert;
+        if (statement == null) {
+            Dialect dialect = entityManager.getEntityManagerFactory()
+                    .unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+            statement = supportsRowAlias(dialect) ? ROW_ALIAS_UPSERT : VALUES_UPSERT;
+            upsert = statement;
+        }
+        return statement;
+    }
+
+    private static boolean supportsRowAlias(Dialect dialect) {
+        return dialect instanceof MySQLDialect
+                && !(dialect instanceof MariaDBDialect)
+                && dialect.getVersion().isSameOrAfter(8, 0, 19);
+    }
+}
@@ -1,6 +1,7 @@
 package com.azienda.erp.erp_backend.security;
 
 import com.azienda.erp.erp_backend.service.CustomUserDetailsService;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -43,11 +44,14 @@ public class SecurityConfig {
                 .csrf().disable() // Disabilita CSRF per le API stateless
                 .authorizeHttpRequests()
 
+                // I dispatch asincroni proseguono risposte già autorizzate, come il flusso delle vendite
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 // Percorsi pubblici accessibili a chiunque
                 .requestMatchers("/api/auth/**", "/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll()
 
                 // Percorsi per la registrazione di nuovi utenti (accessibili solo agli amministratori)
-                .requestMatchers("/api/users/register", "/api/users/defaultUser", "/api/products/**", "/api/suppliers/**").hasRole(ADMIN_ROLE)
+                .requestMatchers("/api/users/register", "/api/users/defaultUser", "/api/products/**", "/api/suppliers/**", "/api/reports/rollups/**").hasRole(ADMIN_ROLE)
 
                 // Metodi DELETE sono accessibili solo agli amministratori
                 .requestMatchers(HttpMethod.DELETE, "/api/users/**", "/api/sales/**", "/api/products/**", "/api/suppliers/**").hasRole(ADMIN_ROLE)
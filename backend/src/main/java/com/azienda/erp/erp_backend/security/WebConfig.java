@@ -22,7 +22,7 @@ public class WebConfig implements WebMvcConfigurer {
         registry.addMapping("/**") // Consente CORS su tutte le rotte del server.
                 .allowedOrigins("http://localhost:5173", "http://localhost:5174") // Origini consentite (frontend in sviluppo).
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS") // Metodi HTTP consentiti.
-                .allowedHeaders("Authorization", "Content-Type", "Accept", "X-Requested-With") // Headers consentiti nelle richieste.
+                .allowedHeaders("Authorization", "Content-Type", "Accept", "X-Requested-With", "Idempotency-Key") // Headers consentiti nelle richieste.
                 .allowCredentials(true); // Permette l'invio di credenziali (cookie, headers di autenticazione, ecc.).
     }
 }
@@ -0,0 +1,124 @@
+package com.azienda.erp.erp_backend.service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Cache in memoria con un numero massimo di voci e una durata massima per ciascuna.
+ * Superata la capienza viene rimossa la voce usata meno di recente; le voci scadute
+ * non vengono più restituite e sono rimosse alla lettura o durante la pulizia.
+ * Tutti i metodi sono sincronizzati, quindi la cache può essere condivisa tra thread.
+ *
+ * @param <K> il tipo delle chiavi.
+ * @param <V> il tipo dei valori.
+ */
+public class BoundedTtlCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    public BoundedTtlCache(int maxSize, Duration ttl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("La capienza della cache deve essere positiva.");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > BoundedTtlCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Restituisce il valore associato alla chiave, o null se assente o scaduto.
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Associa il valore alla chiave, con scadenza calcolata da ora.
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Rimuove la voce associata alla chiave, se presente.
+     */
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Rimuove le voci le cui chiavi soddisfano la condizione indicata.
+     *
+     * @return il numero di voci rimosse.
+     */
+    public synchronized int removeIf(Predicate<? super K> condition) {
+        int removed = 0;
+        for (Iterator<K> it = entries.keySet().iterator(); it.hasNext(); ) {
+            if (condition.test(it.next())) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Rimuove tutte le voci.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Rimuove le voci scadute.
+     *
+     * @return il numero di voci rimosse.
+     */
+    public synchronized int evictExpired() {
+        long now = System.nanoTime();
+        int removed = 0;
+        for (Iterator<Entry<V>> it = entries.values().iterator(); it.hasNext(); ) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.entity.IdempotencyRecord;
+import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.entity.SaleItem;
+import com.azienda.erp.erp_backend.exception.IdempotencyKeyReusedException;
+import com.azienda.erp.erp_backend.exception.InvalidIdempotencyKeyException;
+import com.azienda.erp.erp_backend.money.Money;
+import com.azienda.erp.erp_backend.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Servizio per le chiavi di idempotenza della creazione vendite.
+ * Ogni chiave viene salvata nella stessa transazione della vendita che ha creato, quindi esiste
+ * se e solo se la vendita è stata registrata. Le chiavi usate di recente sono tenute anche in una cache
+ * limitata in memoria, così un nuovo invio viene riconosciuto senza interrogare il database.
+ * Con ogni chiave viene salvata l'impronta del contenuto della richiesta: una chiave riusata per una vendita
+ * diversa viene respinta invece di restituire la vendita creata allora. Le chiavi restano valide almeno per la durata configurata, poi vengono eliminate periodicamente.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final Duration ttl;
+    private final BoundedTtlCache<String, RecordedSale> salesByKey;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              @Value("${erp.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${erp.idempotency.cache-size:10000}") int cacheSize) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.ttl = Duration.ofHours(Math.max(1, ttlHours));
+        this.salesByKey = new BoundedTtlCache<>(Math.max(1, cacheSize), ttl);
+    }
+
+    /**
+     * Verifica la chiave ricevuta dal client.
+     *
+     * @param key la chiave ricevuta, o null se il client non l'ha inviata.
+     * @throws InvalidIdempotencyKeyException se la chiave è vuota o troppo lunga.
+     */
+    public void validate(String key) {
+        if (key == null) {
+            return;
+        }
+        if (key.isBlank() || key.length() > IdempotencyRecord.MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException(
+                    "La chiave di idempotenza deve contenere da 1 a " + IdempotencyRecord.MAX_KEY_LENGTH + " caratteri.");
+        }
+    }
+
+    /**
+     * Calcola l'impronta del contenuto di una richiesta di creazione vendita. La richiesta viene normalizzata:
+     * le quantità sono sommate per barcode e ordinate, gli importi convertiti in centesimi, così due invii
+     * della stessa vendita hanno la stessa impronta anche se le righe arrivano in ordine diverso.
+     *
+     * @param sale la vendita ricevuta.
+     * @return l'impronta SHA-256 in esadecimale.
+     */
+    public String fingerprint(Sale sale) {
+        Map<Long, Integer> quantitiesByBarcode = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        if (sale.getSaleItems() != null) {
+            for (SaleItem saleItem : sale.getSaleItems()) {
+                Long barcode = saleItem.getProduct() != null ? saleItem.getProduct().getBarcode() : null;
+                quantitiesByBarcode.merge(barcode, saleItem.getQuantitySold(), Integer::sum);
+            }
+        }
+        StringBuilder canonical = new StringBuilder();
+        quantitiesByBarcode.forEach((barcode, quantity) -> canonical.append(barcode).append(':').append(quantity).append(';'));
+        canonical.append('|').append(sale.getPaymentMethods())
+                .append('|').append(Money.toCents(sale.getDiscount()))
+                .append('|').append(sale.getNote());
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Cerca la vendita già creata con la chiave indicata, prima nella cache e poi nel database.
+     *
+     * @param key la chiave ricevuta dal client.
+     * @param requestHash l'impronta della richiesta ricevuta, calcolata con {@link #fingerprint(Sale)}.
+     * @return l'ID della vendita, o vuoto se la chiave non è mai stata usata.
+     * @throws IdempotencyKeyReusedException se la chiave è stata usata per una richiesta con contenuto diverso.
+     */
+    public Optional<Long> findSaleId(String key, String requestHash) {
+        RecordedSale recorded = salesByKey.get(key);
+        if (recorded == null) {
+            recorded = idempotencyRecordRepository.findById(key)
+                    .map(record -> new RecordedSale(record.getSaleId(), record.getRequestHash()))
+                    .orElse(null);
+            if (recorded == null) {
+                return Optional.empty();
+            }
+            salesByKey.put(key, recorded);
+        }
+        if (recorded.requestHash() != null && !recorded.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyReusedException("La chiave di idempotenza " + key
+                    + " è già stata usata per una vendita con contenuto diverso.");
+        }
+        return Optional.of(recorded.saleId());
+    }
+
+    /**
+     * Registra la chiave per la vendita appena creata, nella transazione della vendita.
+     * Se la stessa chiave è già stata registrata, anche da una richiesta concorrente, l'insert fallisce
+     * per violazione della chiave primaria e la transazione viene annullata.
+     * La cache viene aggiornata solo dopo il commit.
+     *
+     * @param key la chiave ricevuta dal client.
+     * @param saleId l'ID della vendita creata.
+     * @param requestHash l'impronta della richiesta che ha creato la vendita.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String key, Long saleId, String requestHash) {
+        idempotencyRecordRepository.insert(key, saleId, Instant.now(), requestHash);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                salesByKey.put(key, new RecordedSale(saleId, requestHash));
+            }
+        });
+    }
+
+    /**
+     * Elimina le chiavi più vecchie della durata configurata.
+     */
+    @Scheduled(fixedDelayString = "${erp.idempotency.purge-interval-ms:3600000}",
+            initialDelayString = "${erp.idempotency.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int removed = idempotencyRecordRepository.deleteCreatedBefore(Instant.now().minus(ttl));
+        salesByKey.evictExpired();
+        if (removed > 0) {
+            logger.info("Eliminate {} chiavi di idempotenza scadute", removed);
+        }
+    }
+
+    /**
+     * Vendita registrata con una chiave, con l'impronta della richiesta che l'ha creata.
+     */
+    private record RecordedSale(Long saleId, String requestHash) {
+    }
+}
@@ -0,0 +1,96 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.dto.SaleTotals;
+import com.azienda.erp.erp_backend.dto.TopSellers;
+import com.azienda.erp.erp_backend.exception.InvalidDateRangeException;
+import com.azienda.erp.erp_backend.journal.SaleChangedEvent;
+import com.azienda.erp.erp_backend.repository.SaleItemRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servizio per le analisi di vendita dei prodotti.
+ * Le classifiche dei prodotti più venduti sono calcolate dal database e tenute in cache per periodo;
+ * quando una vendita viene creata, modificata o cancellata, le classifiche dei periodi
+ * che comprendono il suo giorno vengono scartate dopo il commit.
+ */
+@Service
+public class ProductAnalyticsService {
+
+    /**
+     * Numero predefinito e massimo di prodotti per classifica.
+     */
+    public static final int DEFAULT_TOP_LIMIT = 10;
+    public static final int MAX_TOP_LIMIT = 100;
+
+    private final SaleItemRepository saleItemRepository;
+    private final BoundedTtlCache<TopSellersKey, TopSellers> topSellersCache;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ProductAnalyticsService(SaleItemRepository saleItemRepository,
+                                   @Value("${erp.analytics.top-products.cache-size:256}") int cacheSize,
+                                   @Value("${erp.analytics.top-products.cache-ttl-minutes:10}") long cacheTtlMinutes) {
+        this.saleItemRepository = saleItemRepository;
+        this.topSellersCache = new BoundedTtlCache<>(Math.max(1, cacheSize), Duration.ofMinutes(Math.max(1, cacheTtlMinutes)));
+    }
+
+    /**
+     * Recupera i prodotti più venduti tra due giorni, estremi inclusi, per pezzi e per incasso.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @param limit il numero di prodotti per classifica.
+     * @return le due classifiche del periodo.
+     * @throws InvalidDateRangeException se l'intervallo di date non è valido.
+     */
+    // Non in sola lettura: la classifica viene letta dal primario, una replica in ritardo la metterebbe in cache già superata
+    @Transactional
+    public TopSellers getTopSellers(LocalDate from, LocalDate to, int limit) {
+        if (from.isAfter(to)) {
+            throw new InvalidDateRangeException("La data iniziale non può essere successiva alla data finale.");
+        }
+        TopSellersKey key = new TopSellersKey(from, to, Math.max(1, Math.min(limit, MAX_TOP_LIMIT)));
+        TopSellers cached = topSellersCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Se una vendita cambia mentre la classifica viene calcolata, il risultato potrebbe essere già superato
+        // e non viene messo in cache
+        long generation = invalidations.get();
+        TopSellers topSellers = new TopSellers(from, to,
+                saleItemRepository.findTopByUnits(from, to, Limit.of(key.limit())),
+                saleItemRepository.findTopByRevenue(from, to, Limit.of(key.limit())));
+        if (invalidations.get() == generation) {
+            topSellersCache.put(key, topSellers);
+        }
+        return topSellers;
+    }
+
+    /**
+     * Scarta le classifiche dei periodi che comprendono il giorno della vendita modificata,
+     * prima e dopo la modifica.
+     *
+     * @param event la modifica confermata.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onSaleChanged(SaleChangedEvent event) {
+        invalidations.incrementAndGet();
+        topSellersCache.removeIf(key -> key.covers(event.getBefore()) || key.covers(event.getAfter()));
+    }
+
+    private record TopSellersKey(LocalDate from, LocalDate to, int limit) {
+
+        private boolean covers(SaleTotals totals) {
+            return totals != null && !totals.getDay().isBefore(from) && !totals.getDay().isAfter(to);
+        }
+    }
+}
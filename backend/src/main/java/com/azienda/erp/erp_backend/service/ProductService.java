@@ -1,30 +1,51 @@
 package com.azienda.erp.erp_backend.service;
 
+import com.azienda.erp.erp_backend.catalog.ProductCatalog;
+import com.azienda.erp.erp_backend.dto.CatalogProduct;
+import com.azienda.erp.erp_backend.dto.ProductPage;
+import com.azienda.erp.erp_backend.dto.ProductSearchFilter;
 import com.azienda.erp.erp_backend.entity.Product;
 import com.azienda.erp.erp_backend.entity.Supplier;
+import com.azienda.erp.erp_backend.exception.InvalidProductSearchException;
 import com.azienda.erp.erp_backend.exception.ProductNotFoundException;
 import com.azienda.erp.erp_backend.exception.SupplierNotFoundException;
 import com.azienda.erp.erp_backend.repository.ProductRepository;
+import com.azienda.erp.erp_backend.repository.ProductSpecifications;
 import com.azienda.erp.erp_backend.repository.SupplierRepository;
-import jakarta.transaction.Transactional;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Servizio per la gestione dei prodotti.
  * Fornisce operazioni CRUD per i prodotti e interagisce con il repository per salvare e recuperare i dati.
+ * I barcode vengono risolti dal catalogo in memoria, aggiornato dopo il commit di ogni scrittura.
  */
 @Service
 public class ProductService {
 
+    /**
+     * Dimensione di pagina predefinita e massima per la ricerca dei prodotti.
+     */
+    public static final int DEFAULT_SEARCH_PAGE_SIZE = 25;
+    public static final int MAX_SEARCH_PAGE_SIZE = 200;
+
     private final ProductRepository productRepository;
     private final SupplierRepository supplierRepository;
+    private final ProductCatalog productCatalog;
 
-    public ProductService(ProductRepository productRepository, SupplierRepository supplierRepository) {
+    public ProductService(ProductRepository productRepository, SupplierRepository supplierRepository,
+                          ProductCatalog productCatalog) {
         this.productRepository = productRepository;
         this.supplierRepository = supplierRepository;
+        this.productCatalog = productCatalog;
     }
 
     /**
@@ -32,25 +53,64 @@ public class ProductService {
      *
      * @return lista di tutti i prodotti presenti nel database.
      */
+    @Transactional(readOnly = true)
     public List<Product> getAllProduct() {
         return productRepository.findAll();
     }
 
     /**
-     * Cerca un prodotto tramite il suo barcode.
+     * Cerca i prodotti che rispettano i filtri indicati, una pagina alla volta.
+     * Filtri e ordinamenti sono coperti dagli indici della tabella dei prodotti; a parità di valore
+     * i prodotti sono ordinati per ID, così le pagine non si sovrappongono.
+     *
+     * @param filter i filtri della ricerca.
+     * @param sort il campo su cui ordinare.
+     * @param descending true per l'ordine decrescente.
+     * @param page il numero di pagina, a partire da zero.
+     * @param size il numero di prodotti per pagina.
+     * @return la pagina di prodotti, con il numero totale di prodotti trovati.
+     * @throws InvalidProductSearchException se l'intervallo di prezzo non è valido.
+     */
+    @Transactional(readOnly = true)
+    public ProductPage searchProducts(ProductSearchFilter filter, ProductSort sort, boolean descending, int page, int size) {
+        if (filter.getMinPrice() != null && filter.getMaxPrice() != null && filter.getMinPrice() > filter.getMaxPrice()) {
+            throw new InvalidProductSearchException("Il prezzo minimo non può essere superiore al prezzo massimo.");
+        }
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        PageRequest pageRequest = PageRequest.of(Math.max(0, page), Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE)),
+                Sort.by(direction, sort.getProperty()).and(Sort.by(direction, "id")));
+
+        Page<Product> products = productRepository.findAll(ProductSpecifications.matching(filter), pageRequest);
+        return new ProductPage(products.getContent(), products.getNumber(), products.getSize(),
+                products.getTotalElements(), products.getTotalPages());
+    }
+
+    /**
+     * Cerca un prodotto tramite il suo barcode nel catalogo in memoria.
+     * Non apre una transazione: il database viene interrogato solo se il barcode non è nel catalogo.
      *
      * @param barcode il codice a barre del prodotto da cercare.
      * @return il prodotto trovato.
      * @throws ProductNotFoundException se il prodotto non viene trovato.
      */
-    public Product findByBarcode(Long barcode) {
-        Product product = productRepository.findByBarcode(barcode);
+    public CatalogProduct findByBarcode(Long barcode) {
+        CatalogProduct product = productCatalog.resolve(List.of(barcode)).get(barcode);
         if (product == null) {
             throw new ProductNotFoundException("Prodotto con barcode " + barcode + " non trovato");
         }
         return product;
     }
 
+    /**
+     * Risolve un gruppo di barcode nel catalogo in memoria, cercando nel database solo quelli assenti.
+     *
+     * @param barcodes i codici a barre da risolvere.
+     * @return i prodotti trovati, nell'ordine dei barcode; i barcode senza prodotto corrispondente vengono ignorati.
+     */
+    public List<CatalogProduct> resolveBarcodes(Collection<Long> barcodes) {
+        return new ArrayList<>(productCatalog.resolve(barcodes).values());
+    }
+
     /**
      * Cerca un prodotto tramite il suo ID.
      *
@@ -58,6 +118,7 @@ public class ProductService {
      * @return il prodotto trovato.
      * @throws ProductNotFoundException se il prodotto con l'ID specificato non viene trovato.
      */
+    @Transactional(readOnly = true)
     public Product getProductById(Long id) {
         return productRepository.findById(id)
                 .orElseThrow(() -> new ProductNotFoundException("Prodotto con ID " + id + " non trovato"));
@@ -84,7 +145,9 @@ public class ProductService {
         Supplier supplier = supplierRepository.findById(product.getSupplier().getId())
                 .orElseThrow(() -> new SupplierNotFoundException("Fornitore non trovato"));
         product.setSupplier(supplier);
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        productCatalog.recordProductSaved(null, savedProduct);
+        return savedProduct;
     }
 
     /**
@@ -105,6 +168,7 @@ public class ProductService {
             throw new IllegalArgumentException("Il prezzo di vendita non può essere inferiore al prezzo di acquisto");
         }
 
+        Long previousBarcode = product.getBarcode();
         product.setBarcode(productDetails.getBarcode());
         product.setName(productDetails.getName());
         product.setQuantity(productDetails.getQuantity());
@@ -115,7 +179,9 @@ public class ProductService {
                 .orElseThrow(() -> new SupplierNotFoundException("Fornitore non trovato"));
         product.setSupplier(supplier);
 
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        productCatalog.recordProductSaved(previousBarcode, savedProduct);
+        return savedProduct;
     }
 
     /**
@@ -124,9 +190,11 @@ public class ProductService {
      * @param id l'ID del prodotto da eliminare.
      * @throws ProductNotFoundException se il prodotto con l'ID specificato non viene trovato.
      */
+    @Transactional
     public void deleteProduct(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ProductNotFoundException("Prodotto con ID " + id + " non trovato"));
         productRepository.delete(product);
+        productCatalog.recordProductRemoved(product);
     }
 }
\ No newline at end of file
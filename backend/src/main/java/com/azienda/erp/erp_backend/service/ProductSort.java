@@ -0,0 +1,63 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.exception.InvalidProductSearchException;
+
+import java.util.Locale;
+
+/**
+ * Ordinamenti disponibili per la ricerca dei prodotti, ciascuno coperto da un indice della tabella dei prodotti.
+ */
+public enum ProductSort {
+    NAME("name"),
+    BARCODE("barcode"),
+    PRICE("sellingPrice"),
+    QUANTITY("quantity");
+
+    private final String property;
+
+    ProductSort(String property) {
+        this.property = property;
+    }
+
+    /**
+     * Restituisce la proprietà di Product su cui ordinare.
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Risolve l'ordinamento a partire dal parametro della richiesta, senza distinzione tra maiuscole e minuscole.
+     *
+     * @param value il nome dell'ordinamento.
+     * @return l'ordinamento corrispondente.
+     * @throws InvalidProductSearchException se l'ordinamento non è supportato.
+     */
+    public static ProductSort from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new InvalidProductSearchException("Ordinamento non supportato: " + value
+                    + ". Usare name, barcode, price o quantity.");
+        }
+    }
+
+    /**
+     * Interpreta il verso dell'ordinamento, senza distinzione tra maiuscole e minuscole.
+     *
+     * @param direction il verso richiesto: asc o desc.
+     * @return true se l'ordinamento è decrescente.
+     * @throws InvalidProductSearchException se il verso non è asc né desc.
+     */
+    public static boolean isDescending(String direction) {
+        String value = direction != null ? direction.trim() : "";
+        if ("asc".equalsIgnoreCase(value)) {
+            return false;
+        }
+        if ("desc".equalsIgnoreCase(value)) {
+            return true;
+        }
+        throw new InvalidProductSearchException("Verso di ordinamento non supportato: " + direction
+                + ". Usare asc o desc.");
+    }
+}
@@ -0,0 +1,192 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.exception.TooManySubscribersException;
+import com.azienda.erp.erp_backend.journal.SaleChangedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flusso in tempo reale, tramite server-sent events, delle vendite create, modificate e cancellate.
+ * Ogni modifica confermata dal commit viene accodata a ciascun client collegato senza mai bloccare
+ * la transazione che l'ha prodotta; l'invio avviene su un pool di thread dedicato e di dimensione fissa.
+ * Le code dei client sono limitate: se un client lento la riempie, gli eventi in attesa vengono scartati
+ * e sostituiti da un unico evento di risincronizzazione, dopo il quale il client ricarica i dati completi.
+ *
+ * Eventi inviati:
+ * - ready: subito dopo il collegamento, il client carica i dati iniziali;
+ * - sale: una modifica, con tipo, ID della vendita e contributo ai totali prima e dopo la modifica;
+ * - resync: alcuni eventi sono stati scartati, il client ricarica i dati completi.
+ */
+@Service
+public class SaleEventBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaleEventBroadcaster.class);
+
+    public static final String READY_EVENT = "ready";
+    public static final String SALE_EVENT = "sale";
+    public static final String RESYNC_EVENT = "resync";
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService dispatcher;
+    private final int queueCapacity;
+    private final int maxSubscribers;
+    private final long emitterTimeoutMs;
+
+    public SaleEventBroadcaster(@Value("${erp.sales.stream.queue-capacity:256}") int queueCapacity,
+                                @Value("${erp.sales.stream.max-subscribers:200}") int maxSubscribers,
+                                @Value("${erp.sales.stream.timeout-ms:1800000}") long emitterTimeoutMs,
+                                @Value("${erp.sales.stream.dispatch-threads:2}") int dispatchThreads) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxSubscribers = Math.max(1, maxSubscribers);
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(Math.max(1, dispatchThreads), runnable -> {
+            Thread thread = new Thread(runnable, "sale-stream-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Chiude i collegamenti aperti e ferma il pool di invio all'arresto dell'applicazione.
+     */
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * Collega un nuovo client al flusso delle vendite.
+     *
+     * @return l'emitter su cui il client riceve gli eventi.
+     * @throws TooManySubscribersException se è già collegato il numero massimo di client.
+     */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new TooManySubscribersException("Raggiunto il numero massimo di " + maxSubscribers
+                    + " client collegati al flusso delle vendite.");
+        }
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(ex -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        subscriber.resync.set(true);
+        subscriber.schedule();
+        return emitter;
+    }
+
+    /**
+     * Accoda a tutti i client una modifica confermata dal commit.
+     *
+     * @param event la modifica confermata.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onSaleChanged(SaleChangedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        PendingEvent pending = new PendingEvent(sequence.incrementAndGet(), event);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(pending);
+        }
+    }
+
+    /**
+     * Invia periodicamente un commento a tutti i client, così i proxy non chiudono i collegamenti inattivi
+     * e quelli interrotti vengono rilevati e rimossi.
+     */
+    @Scheduled(fixedDelayString = "${erp.sales.stream.heartbeat-ms:20000}")
+    public void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeat.set(true);
+            subscriber.schedule();
+        }
+    }
+
+    private record PendingEvent(long sequence, SaleChangedEvent event) {
+    }
+
+    /**
+     * Client collegato, con la propria coda limitata. Al più un thread del pool alla volta invia i suoi eventi.
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<PendingEvent> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean resync = new AtomicBoolean();
+        private final AtomicBoolean heartbeat = new AtomicBoolean();
+        private boolean ready;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(PendingEvent pending) {
+            if (!queue.offer(pending)) {
+                // Client troppo lento: gli eventi in attesa diventano un'unica risincronizzazione
+                resync.set(true);
+                queue.clear();
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                if (resync.getAndSet(false)) {
+                    queue.clear();
+                    emitter.send(SseEmitter.event().name(ready ? RESYNC_EVENT : READY_EVENT).data(""));
+                    ready = true;
+                }
+                PendingEvent pending;
+                while ((pending = queue.poll()) != null && !resync.get()) {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(pending.sequence()))
+                            .name(SALE_EVENT)
+                            .data(pending.event(), MediaType.APPLICATION_JSON));
+                }
+                if (heartbeat.getAndSet(false)) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+            } catch (IOException | IllegalStateException ex) {
+                logger.debug("Client del flusso delle vendite scollegato: {}", ex.getMessage());
+                subscribers.remove(this);
+                emitter.completeWithError(ex);
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            if (!queue.isEmpty() || resync.get() || heartbeat.get()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.exception.UnsupportedExportFormatException;
+
+import java.util.Locale;
+
+/**
+ * Formati supportati dall'esportazione vendite.
+ */
+public enum SaleExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    SaleExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Risolve il formato a partire dal parametro della richiesta, senza distinzione tra maiuscole e minuscole.
+     *
+     * @param value il nome del formato.
+     * @return il formato corrispondente.
+     * @throws UnsupportedExportFormatException se il formato non è supportato.
+     */
+    public static SaleExportFormat from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new UnsupportedExportFormatException("Formato di esportazione non supportato: " + value);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.entity.Sale;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+/**
+ * Esportazione già validata: formato, intervallo di giorni e nome del file da proporre al client.
+ */
+public final class SaleExportRequest {
+
+    private final SaleExportFormat format;
+    private final LocalDate from;
+    private final LocalDate to;
+
+    SaleExportRequest(SaleExportFormat format, LocalDate from, LocalDate to) {
+        this.format = format;
+        this.from = from;
+        this.to = to;
+    }
+
+    public SaleExportFormat getFormat() {
+        return format;
+    }
+
+    public String getFileName() {
+        return "vendite_" + from + "_" + to + "." + format.getExtension();
+    }
+
+    ZonedDateTime getStart() {
+        return from.atStartOfDay(Sale.BUSINESS_ZONE);
+    }
+
+    ZonedDateTime getEnd() {
+        return to.plusDays(1).atStartOfDay(Sale.BUSINESS_ZONE);
+    }
+}
@@ -0,0 +1,161 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.dto.SaleExportRow;
+import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.exception.InvalidDateRangeException;
+import com.azienda.erp.erp_backend.repository.SaleRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Servizio per l'esportazione dell'archivio vendite in NDJSON o CSV, un articolo venduto per riga.
+ * Le righe vengono lette con un cursore in sola lettura e scritte subito sulla risposta,
+ * quindi la memoria occupata non dipende dal numero di vendite esportate.
+ */
+@Service
+public class SaleExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaleExportService.class);
+
+    private static final LocalDate EXPORT_MIN_DATE = LocalDate.of(1970, 1, 1);
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter CSV_DATE_FORMAT = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+    private static final String CSV_HEADER = "saleId,saleDate,totalPrice,netProfit,discount,paymentMethods,note," +
+            "totalProducts,itemId,barcode,productName,quantitySold,itemSellingPrice,itemPurchasePrice";
+
+    private final SaleRepository saleRepository;
+    private final ObjectWriter rowWriter;
+
+    public SaleExportService(SaleRepository saleRepository, ObjectMapper objectMapper) {
+        this.saleRepository = saleRepository;
+        this.rowWriter = objectMapper.writerFor(SaleExportRow.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Valida i parametri dell'esportazione prima che venga scritto qualsiasi byte della risposta.
+     *
+     * @param from il primo giorno incluso, o null per esportare dall'inizio dello storico.
+     * @param to l'ultimo giorno incluso, o null per esportare fino a oggi.
+     * @param format il nome del formato richiesto.
+     * @return l'esportazione validata.
+     * @throws InvalidDateRangeException se l'intervallo di date non è valido.
+     */
+    public SaleExportRequest prepare(LocalDate from, LocalDate to, String format) {
+        SaleExportFormat exportFormat = SaleExportFormat.from(format);
+        LocalDate fromDate = from != null ? from : EXPORT_MIN_DATE;
+        LocalDate toDate = to != null ? to : LocalDate.now(Sale.BUSINESS_ZONE);
+        if (fromDate.isAfter(toDate)) {
+            throw new InvalidDateRangeException("La data iniziale non può essere successiva alla data finale.");
+        }
+        return new SaleExportRequest(exportFormat, fromDate, toDate);
+    }
+
+    /**
+     * Scrive sullo stream indicato tutte le righe dell'esportazione.
+     *
+     * @param request l'esportazione validata.
+     * @param out lo stream di destinazione, che non viene chiuso.
+     * @return il numero di righe scritte.
+     * @throws IOException se la scrittura fallisce, ad esempio perché il client ha chiuso la connessione.
+     */
+    @Transactional(readOnly = true)
+    public long export(SaleExportRequest request, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        long rows;
+        try (Stream<SaleExportRow> stream = saleRepository.streamExportRows(request.getStart(), request.getEnd())) {
+            if (request.getFormat() == SaleExportFormat.CSV) {
+                rows = writeCsv(stream.iterator(), writer);
+            } else {
+                rows = writeNdjson(stream.iterator(), writer);
+            }
+        }
+        writer.flush();
+        logger.info("Esportate {} righe di vendita in formato {}", rows, request.getFormat());
+        return rows;
+    }
+
+    private long writeNdjson(Iterator<SaleExportRow> rows, Writer writer) throws IOException {
+        long count = 0;
+        JsonGenerator generator = rowWriter.createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        while (rows.hasNext()) {
+            rowWriter.writeValue(generator, rows.next());
+            generator.writeRaw('\n');
+            count++;
+        }
+        generator.flush();
+        return count;
+    }
+
+    private long writeCsv(Iterator<SaleExportRow> rows, Writer writer) throws IOException {
+        long count = 0;
+        writer.write(CSV_HEADER);
+        writer.write("\r\n");
+        while (rows.hasNext()) {
+            SaleExportRow row = rows.next();
+            writer.write(String.valueOf(row.getSaleId()));
+            writeCsvField(writer, row.getSaleDate());
+            writeCsvField(writer, row.getTotalPrice());
+            writeCsvField(writer, row.getNetProfit());
+            writeCsvField(writer, row.getDiscount());
+            writeCsvField(writer, row.getPaymentMethods());
+            writeCsvField(writer, row.getNote());
+            writeCsvField(writer, row.getTotalProducts());
+            writeCsvField(writer, row.getItemId());
+            writeCsvField(writer, row.getBarcode());
+            writeCsvField(writer, row.getProductName());
+            writeCsvField(writer, row.getQuantitySold());
+            writeCsvField(writer, row.getItemSellingPrice());
+            writeCsvField(writer, row.getItemPurchasePrice());
+            writer.write("\r\n");
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Scrive un campo CSV preceduto dal separatore, racchiudendolo tra virgolette solo quando contiene
+     * separatori, virgolette o ritorni a capo. I valori null diventano campi vuoti.
+     */
+    private static void writeCsvField(Writer writer, Object value) throws IOException {
+        writer.write(',');
+        if (value == null) {
+            return;
+        }
+        String text = value instanceof ZonedDateTime date
+                ? CSV_DATE_FORMAT.format(date.withZoneSameInstant(Sale.BUSINESS_ZONE))
+                : value.toString();
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
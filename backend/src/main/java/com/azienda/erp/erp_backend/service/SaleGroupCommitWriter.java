@@ -0,0 +1,306 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.exception.IdempotencyKeyReusedException;
+import com.azienda.erp.erp_backend.exception.SaleWriteTimeoutException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scrittore a gruppi delle nuove vendite.
+ * Quando è abilitato, le vendite ricevute in contemporanea vengono accodate e registrate da un unico thread
+ * in piccoli lotti, ognuno in una sola transazione: più checkout condividono così lo stesso commit sul database.
+ * Ogni chiamante riceve comunque il proprio risultato o il proprio errore.
+ * Se un lotto fallisce, le sue vendite vengono ripetute una per una in transazioni separate,
+ * così l'errore di una vendita non ricade sulle altre. Un chiamante attende che il thread di scrittura
+ * prenda in carico la sua vendita al massimo per il tempo configurato: oltre quel limite la vendita viene scartata
+ * e il chiamante riceve un errore. Una vendita già presa in carico non può più essere scartata,
+ * quindi il chiamante ne attende comunque l'esito reale.
+ */
+@Component
+public class SaleGroupCommitWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaleGroupCommitWriter.class);
+
+    private final SaleService saleService;
+    private final IdempotencyService idempotencyService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final long timeoutMillis;
+    private final BlockingQueue<PendingSale> queue;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public SaleGroupCommitWriter(SaleService saleService,
+                                 IdempotencyService idempotencyService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${erp.sales.group-commit.enabled:false}") boolean enabled,
+                                 @Value("${erp.sales.group-commit.max-batch-size:32}") int maxBatchSize,
+                                 @Value("${erp.sales.group-commit.max-latency-ms:5}") long maxLatencyMs,
+                                 @Value("${erp.sales.group-commit.queue-capacity:1024}") int queueCapacity,
+                                 @Value("${erp.sales.group-commit.timeout-ms:10000}") long timeoutMs) {
+        this.saleService = saleService;
+        this.idempotencyService = idempotencyService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxLatencyMs));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.timeoutMillis = Math.max(1, timeoutMs);
+    }
+
+    /**
+     * Avvia il thread di scrittura se la scrittura a gruppi è abilitata.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::writeLoop, "sale-group-commit");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("Scrittura a gruppi delle vendite attiva (lotto massimo {}, attesa massima {} ms)",
+                maxBatchSize, TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos));
+    }
+
+    /**
+     * Ferma il thread di scrittura dopo aver registrato le vendite ancora in coda.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Registra una nuova vendita. Con la scrittura a gruppi attiva la vendita viene accodata e il chiamante
+     * attende il commit del lotto che la contiene; altrimenti, o se la coda è piena, viene registrata direttamente.
+     * Se la chiave è già stata usata per la stessa vendita viene restituita la vendita creata allora,
+     * senza toccare le giacenze; se una richiesta concorrente con la stessa chiave registra la vendita per prima,
+     * questa richiesta viene annullata e restituisce la vendita dell'altra.
+     *
+     * @param sale la vendita da registrare.
+     * @param idempotencyKey la chiave ricevuta dal client, o null se assente.
+     * @return la vendita registrata, o quella già registrata con la stessa chiave.
+     * @throws SaleWriteTimeoutException se la vendita non viene presa in carico entro l'attesa massima;
+     * in questo caso la vendita non è stata registrata.
+     * @throws IdempotencyKeyReusedException se la chiave è già stata usata per una vendita con contenuto diverso.
+     */
+    public Sale createSale(Sale sale, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return submit(sale, null);
+        }
+        idempotencyService.validate(idempotencyKey);
+        Optional<Sale> replayed = saleService.findSaleByIdempotencyKey(idempotencyKey, sale);
+        if (replayed.isPresent()) {
+            return replayed.get();
+        }
+        try {
+            return submit(sale, idempotencyKey);
+        } catch (DataIntegrityViolationException ex) {
+            return saleService.findSaleByIdempotencyKey(idempotencyKey, sale).orElseThrow(() -> ex);
+        }
+    }
+
+    private Sale submit(Sale sale, String idempotencyKey) {
+        if (!running) {
+            return saleService.createSale(sale, idempotencyKey);
+        }
+
+        PendingSale pending = new PendingSale(sale, idempotencyKey);
+        if (!queue.offer(pending)) {
+            return saleService.createSale(sale, idempotencyKey);
+        }
+
+        try {
+            return pending.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            if (pending.abandon()) {
+                logger.error("Vendita non presa in carico entro {} ms dalla scrittura a gruppi", timeoutMillis);
+                throw new SaleWriteTimeoutException("Vendita non confermata entro " + timeoutMillis + " ms.");
+            }
+            // La vendita è già in scrittura: rispondere con un errore potrebbe far ripetere una vendita registrata
+            return awaitClaimed(pending);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            if (pending.abandon()) {
+                throw new SaleWriteTimeoutException("Attesa della conferma della vendita interrotta.");
+            }
+            return awaitClaimed(pending);
+        } catch (ExecutionException ex) {
+            throw propagate(ex);
+        }
+    }
+
+    /**
+     * Attende l'esito di una vendita già presa in carico dal thread di scrittura, anche se il thread
+     * chiamante viene interrotto; l'interruzione viene ripristinata al termine dell'attesa.
+     */
+    private static Sale awaitClaimed(PendingSale pending) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            while (true) {
+                try {
+                    return pending.result.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    throw propagate(ex);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static RuntimeException propagate(ExecutionException ex) {
+        if (ex.getCause() instanceof RuntimeException cause) {
+            return cause;
+        }
+        if (ex.getCause() instanceof Error cause) {
+            throw cause;
+        }
+        return new IllegalStateException(ex.getCause());
+    }
+
+    private void writeLoop() {
+        List<PendingSale> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingSale first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collectBatch(batch);
+                commit(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Throwable ex) {
+                // Nessun errore deve fermare il thread o lasciare un chiamante senza risposta
+                logger.error("Errore imprevisto nella scrittura a gruppi delle vendite: ", ex);
+                batch.forEach(pending -> pending.result.completeExceptionally(ex));
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // Vendite accodate durante l'arresto: vengono registrate singolarmente
+        queue.drainTo(batch);
+        try {
+            commit(batch);
+        } catch (Throwable ex) {
+            logger.error("Errore imprevisto nella scrittura a gruppi delle vendite: ", ex);
+            batch.forEach(pending -> pending.result.completeExceptionally(ex));
+        }
+    }
+
+    /**
+     * Completa il lotto con le vendite arrivate entro l'attesa massima, fino alla dimensione massima.
+     */
+    private void collectBatch(List<PendingSale> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + maxLatencyNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingSale next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void commit(List<PendingSale> batch) {
+        // Le vendite vengono prese in carico prima della transazione: quelle il cui chiamante
+        // ha già smesso di attendere non vengono registrate
+        batch.removeIf(pending -> !pending.claim());
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() > 1) {
+            try {
+                List<Sale> saved = transactionTemplate.execute(status -> {
+                    List<Sale> results = new ArrayList<>(batch.size());
+                    for (PendingSale pending : batch) {
+                        results.add(saleService.createSale(pending.sale, pending.idempotencyKey));
+                    }
+                    return results;
+                });
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result.complete(saved.get(i));
+                }
+                return;
+            } catch (RuntimeException ex) {
+                logger.debug("Lotto di {} vendite annullato, le vendite vengono ripetute singolarmente", batch.size(), ex);
+            }
+        }
+
+        for (PendingSale pending : batch) {
+            if (pending.result.isDone()) {
+                continue;
+            }
+            try {
+                pending.result.complete(saleService.createSale(pending.sale, pending.idempotencyKey));
+            } catch (Throwable ex) {
+                pending.result.completeExceptionally(ex);
+            }
+        }
+    }
+
+    /**
+     * Vendita in coda. Lo stato passa da in coda a presa in carico, quando il thread di scrittura la inserisce
+     * in una transazione, oppure a scartata, quando il chiamante smette di attendere: le due transizioni
+     * sono atomiche e si escludono, così una vendita scartata non viene mai registrata.
+     */
+    private static final class PendingSale {
+        private static final int QUEUED = 0;
+        private static final int CLAIMED = 1;
+        private static final int ABANDONED = 2;
+
+        private final Sale sale;
+        private final String idempotencyKey;
+        private final CompletableFuture<Sale> result = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        private PendingSale(Sale sale, String idempotencyKey) {
+            this.sale = sale;
+            this.idempotencyKey = idempotencyKey;
+        }
+
+        private boolean claim() {
+            return state.compareAndSet(QUEUED, CLAIMED);
+        }
+
+        private boolean abandon() {
+            return state.compareAndSet(QUEUED, ABANDONED);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.exception.InvalidPageTokenException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+
+/**
+ * Cursore opaco per la paginazione keyset dell'archivio vendite.
+ * Codifica la coppia (saleDate, id) dell'ultima vendita restituita, che è anche la chiave di ordinamento.
+ */
+final class SalePageToken {
+
+    private final Instant saleDate;
+    private final long id;
+
+    SalePageToken(Instant saleDate, long id) {
+        this.saleDate = saleDate;
+        this.id = id;
+    }
+
+    Instant getSaleDate() {
+        return saleDate;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    /**
+     * Codifica il cursore in una stringa sicura per gli URL.
+     *
+     * @return il token della pagina.
+     */
+    String encode() {
+        String raw = saleDate.getEpochSecond() + "." + saleDate.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Crea il cursore a partire dalla data e dall'ID di una vendita.
+     *
+     * @param saleDate la data della vendita.
+     * @param id l'ID della vendita.
+     * @return il cursore corrispondente.
+     */
+    static SalePageToken of(ZonedDateTime saleDate, Long id) {
+        return new SalePageToken(saleDate.toInstant(), id);
+    }
+
+    /**
+     * Decodifica un token ricevuto dal client.
+     *
+     * @param token il token da decodificare.
+     * @return il cursore decodificato.
+     * @throws InvalidPageTokenException se il token è malformato.
+     */
+    static SalePageToken decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int dot = raw.indexOf('.');
+            int colon = raw.indexOf(':');
+            if (dot < 0 || colon < dot) {
+                throw new InvalidPageTokenException("Token di pagina malformato: " + token);
+            }
+            long seconds = Long.parseLong(raw.substring(0, dot));
+            int nanos = Integer.parseInt(raw.substring(dot + 1, colon));
+            long id = Long.parseLong(raw.substring(colon + 1));
+            return new SalePageToken(Instant.ofEpochSecond(seconds, nanos), id);
+        } catch (IllegalArgumentException | DateTimeException ex) {
+            throw new InvalidPageTokenException("Token di pagina malformato: " + token);
+        }
+    }
+}
@@ -1,194 +1,629 @@
 package com.azienda.erp.erp_backend.service;
 
+import com.azienda.erp.erp_backend.cube.SalesCube;
+import com.azienda.erp.erp_backend.dto.BulkSaleEntry;
+import com.azienda.erp.erp_backend.dto.BulkSaleResponse;
+import com.azienda.erp.erp_backend.dto.BulkSaleResult;
+import com.azienda.erp.erp_backend.dto.CalendarFacet;
+import com.azienda.erp.erp_backend.dto.DashboardSummary;
+import com.azienda.erp.erp_backend.dto.SaleCalendarFacets;
+import com.azienda.erp.erp_backend.dto.SalePage;
+import com.azienda.erp.erp_backend.dto.SaleRow;
+import com.azienda.erp.erp_backend.dto.SaleTotals;
+import com.azienda.erp.erp_backend.dto.SaleView;
+import com.azienda.erp.erp_backend.dto.SalesSummary;
 import com.azienda.erp.erp_backend.entity.Product;
 import com.azienda.erp.erp_backend.entity.Sale;
 import com.azienda.erp.erp_backend.entity.SaleItem;
+import com.azienda.erp.erp_backend.exception.InvalidDateRangeException;
 import com.azienda.erp.erp_backend.exception.SaleNotFoundException;
 import com.azienda.erp.erp_backend.exception.ProductNotFoundException;
+import com.azienda.erp.erp_backend.exception.IdempotencyKeyReusedException;
 import com.azienda.erp.erp_backend.exception.InsufficientProductQuantityException;
+import com.azienda.erp.erp_backend.journal.SaleChangedEvent;
+import com.azienda.erp.erp_backend.money.Money;
 import com.azienda.erp.erp_backend.repository.ProductRepository;
 import com.azienda.erp.erp_backend.repository.SaleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.YearMonth;
-import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Service
 public class SaleService {
 
+    private static final Logger logger = LoggerFactory.getLogger(SaleService.class);
+
+    /**
+     * Dimensione di pagina predefinita e massima per l'archivio vendite.
+     */
+    public static final int DEFAULT_ARCHIVE_PAGE_SIZE = 50;
+    public static final int MAX_ARCHIVE_PAGE_SIZE = 200;
+
+    private static final LocalDate ARCHIVE_MIN_DATE = LocalDate.of(1970, 1, 1);
+    private static final LocalDate ARCHIVE_MAX_DATE = LocalDate.of(9999, 1, 1);
+
     private final SaleRepository saleRepository;
     private final ProductRepository productRepository;
-
-    public SaleService(SaleRepository saleRepository, ProductRepository productRepository) {
+    private final SalesRollupService salesRollupService;
+    private final IdempotencyService idempotencyService;
+    private final SalesCube salesCube;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SaleService(SaleRepository saleRepository, ProductRepository productRepository,
+                       SalesRollupService salesRollupService, IdempotencyService idempotencyService,
+                       SalesCube salesCube, ApplicationEventPublisher eventPublisher) {
         this.saleRepository = saleRepository;
         this.productRepository = productRepository;
+        this.salesRollupService = salesRollupService;
+        this.idempotencyService = idempotencyService;
+        this.salesCube = salesCube;
+        this.eventPublisher = eventPublisher;
     }
 
 
-    public List<Sale> getAllSales() {
-        return saleRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<SaleView> getAllSales() {
+        return toViews(saleRepository.findAll());
     }
 
-    public List<Sale> orderByDesc() {
-        return saleRepository.findAllByOrderBySaleDateDesc();
+    @Transactional(readOnly = true)
+    public List<SaleView> orderByDesc() {
+        return toViews(saleRepository.findAllByOrderBySaleDateDesc());
     }
 
-    public List<Sale> getTop12Sales() {
-        return saleRepository.findTop12ByOrderBySaleDateDesc();
+    @Transactional(readOnly = true)
+    public List<SaleRow> getTop12Sales() {
+        return saleRepository.findLatestRows(Limit.of(12));
     }
 
-    public Sale getSaleById(Long id) {
-        return saleRepository.findById(id)
+    /**
+     * Recupera una pagina dell'archivio vendite con paginazione keyset su (saleDate, id).
+     * Ogni pagina costa una sola scansione d'indice, indipendentemente dalla quantità di storico presente.
+     *
+     * @param from il primo giorno incluso, o null per nessun limite inferiore.
+     * @param to l'ultimo giorno incluso, o null per nessun limite superiore.
+     * @param size il numero di vendite per pagina.
+     * @param pageToken il token restituito dalla pagina precedente, o null per la prima pagina.
+     * @return la pagina di vendite con l'eventuale token per la pagina successiva.
+     * @throws InvalidDateRangeException se l'intervallo di date non è valido.
+     */
+    @Transactional(readOnly = true)
+    public SalePage getArchivePage(LocalDate from, LocalDate to, int size, String pageToken) {
+        LocalDate fromDate = from != null ? from : ARCHIVE_MIN_DATE;
+        LocalDate toDate = to != null ? to : ARCHIVE_MAX_DATE;
+        if (fromDate.isAfter(toDate)) {
+            throw new InvalidDateRangeException("La data iniziale non può essere successiva alla data finale.");
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_ARCHIVE_PAGE_SIZE));
+
+        ZonedDateTime start = fromDate.atStartOfDay(Sale.BUSINESS_ZONE);
+        ZonedDateTime end = toDate.plusDays(1).atStartOfDay(Sale.BUSINESS_ZONE);
+        Limit limit = Limit.of(pageSize + 1);
+
+        List<Long> saleIds;
+        if (pageToken == null || pageToken.isBlank()) {
+            saleIds = saleRepository.findArchivePageIds(start, end, limit);
+        } else {
+            SalePageToken cursor = SalePageToken.decode(pageToken);
+            saleIds = saleRepository.findArchivePageIdsAfter(start, end,
+                    cursor.getSaleDate().atZone(Sale.BUSINESS_ZONE), cursor.getId(), limit);
+        }
+
+        boolean hasNext = saleIds.size() > pageSize;
+        List<Sale> sales = findWithItemsInOrder(hasNext ? saleIds.subList(0, pageSize) : saleIds);
+
+        String nextPageToken = null;
+        if (hasNext) {
+            Sale last = sales.get(pageSize - 1);
+            nextPageToken = SalePageToken.of(last.getSaleDate(), last.getId()).encode();
+        }
+        return new SalePage(toViews(sales), nextPageToken);
+    }
+
+    @Transactional(readOnly = true)
+    public SaleView getSaleById(Long id) {
+        return saleRepository.findWithItemsById(id)
+                .map(SaleView::of)
                 .orElseThrow(() -> new SaleNotFoundException("Vendita con ID " + id + " non trovata."));
     }
 
-    public List<Sale> getSalesByDate(LocalDate date) {
-        ZonedDateTime startOfDay = date.atStartOfDay(ZoneId.systemDefault());
-        ZonedDateTime endOfDay = date.atTime(23, 59, 59).atZone(ZoneId.systemDefault());
-        return saleRepository.findBySaleDateBetween(startOfDay, endOfDay);
+    @Transactional(readOnly = true)
+    public List<SaleRow> getSalesByDate(LocalDate date) {
+        return saleRepository.findRowsBySaleLocalDateBetween(date, date);
     }
 
-    public List<Sale> getSalesByCurrentMonth() {
-        YearMonth currentMonth = YearMonth.now();
-        ZonedDateTime startOfMonth = currentMonth.atDay(1).atStartOfDay(ZoneId.systemDefault());
-        ZonedDateTime endOfMonth = currentMonth.atEndOfMonth().atTime(23, 59, 59).atZone(ZoneId.systemDefault());
-        return saleRepository.findBySaleDateBetween(startOfMonth, endOfMonth);
+    @Transactional(readOnly = true)
+    public List<SaleRow> getSalesByCurrentMonth() {
+        YearMonth currentMonth = YearMonth.now(Sale.BUSINESS_ZONE);
+        return saleRepository.findRowsBySaleLocalDateBetween(currentMonth.atDay(1), currentMonth.atEndOfMonth());
     }
 
 
+    /**
+     * Recupera gli anni, i mesi e i giorni selezionabili nell'archivio con il numero di vendite di ciascuno.
+     *
+     * @param year l'anno di cui restituire i mesi, o null.
+     * @param month il mese dell'anno indicato di cui restituire i giorni, o null.
+     * @return le voci del calendario dell'archivio.
+     * @throws InvalidDateRangeException se il mese non è valido o viene indicato senza l'anno.
+     */
+    @Transactional(readOnly = true)
+    public SaleCalendarFacets getCalendarFacets(Integer year, Integer month) {
+        if (month != null && (year == null || month < 1 || month > 12)) {
+            throw new InvalidDateRangeException("Il mese deve essere compreso tra 1 e 12 e richiede l'anno.");
+        }
+        List<CalendarFacet> years = saleRepository.countByYear();
+        List<CalendarFacet> months = List.of();
+        List<CalendarFacet> days = List.of();
+        if (year != null) {
+            months = saleRepository.countByMonthBetween(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+        }
+        if (month != null) {
+            YearMonth yearMonth = YearMonth.of(year, month);
+            days = saleRepository.countByDayBetween(yearMonth.atDay(1), yearMonth.atEndOfMonth());
+        }
+        return new SaleCalendarFacets(years, months, days);
+    }
+
+    /**
+     * Calcola gli indicatori della dashboard (vendite, incasso e profitto di oggi e del mese corrente)
+     * tramite query di aggregazione, senza trasferire le singole vendite.
+     *
+     * @return il riepilogo di oggi e del mese corrente.
+     */
+    public DashboardSummary getDashboardSummary() {
+        LocalDate today = LocalDate.now(Sale.BUSINESS_ZONE);
+        YearMonth currentMonth = YearMonth.from(today);
+        return new DashboardSummary(
+                summarize(today, today),
+                summarize(currentMonth.atDay(1), currentMonth.atEndOfMonth()));
+    }
+
+    /**
+     * Calcola il riepilogo delle vendite tra due giorni, estremi inclusi.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return il riepilogo delle vendite del periodo.
+     * @throws InvalidDateRangeException se l'intervallo di date non è valido.
+     */
+    public SalesSummary summarize(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new InvalidDateRangeException("La data iniziale non può essere successiva alla data finale.");
+        }
+        return saleRepository.summarizeBySaleLocalDateBetween(from, to);
+    }
+
+    /**
+     * Recupera la vendita già creata con la chiave di idempotenza indicata.
+     *
+     * @param idempotencyKey la chiave ricevuta dal client.
+     * @param sale la vendita ricevuta, confrontata con quella che ha usato la chiave per prima.
+     * @return la vendita con i suoi articoli, o vuoto se la chiave non è mai stata usata.
+     * @throws SaleNotFoundException se la vendita creata con la chiave è stata poi eliminata.
+     * @throws IdempotencyKeyReusedException se la chiave è stata usata per una vendita con contenuto diverso.
+     */
+    // Non in sola lettura: la vendita appena creata da un'altra richiesta va cercata sul primario, non su una replica
+    @Transactional
+    public Optional<Sale> findSaleByIdempotencyKey(String idempotencyKey, Sale sale) {
+        return idempotencyService.findSaleId(idempotencyKey, idempotencyService.fingerprint(sale))
+                .map(saleId -> saleRepository.findWithItemsById(saleId)
+                        .orElseThrow(() -> new SaleNotFoundException("Vendita con ID " + saleId + " non trovata.")));
+    }
+
     @Transactional
     public Sale createSale(Sale sale) {
-        double totalPrice = 0;
-        double netProfit = 0;
-        long totalProducts = 0;
+        return createSale(sale, null);
+    }
 
-        Sale newSale = new Sale();
-        newSale.setSaleItems(new ArrayList<>());
+    /**
+     * Crea una vendita registrando, nella stessa transazione, la chiave di idempotenza con cui è stata inviata.
+     *
+     * @param sale la vendita da creare.
+     * @param idempotencyKey la chiave ricevuta dal client, o null se assente.
+     * @return la vendita creata.
+     */
+    @Transactional
+    public Sale createSale(Sale sale, String idempotencyKey) {
+        Map<Long, Product> productsByBarcode = findProductsByBarcode(sale.getSaleItems());
 
+        // Le quantità vengono sommate per prodotto e scalate in ordine di ID, così transazioni concorrenti
+        // acquisiscono i lock sulle righe nello stesso ordine
+        Map<Product, Integer> quantitiesByProduct = new TreeMap<>(Comparator.comparing(Product::getId));
         for (SaleItem saleItem : sale.getSaleItems()) {
-            Product product = productRepository.findByBarcode(saleItem.getProduct().getBarcode());
-            if (product == null) {
-                throw new ProductNotFoundException("Prodotto con barcode " + saleItem.getProduct().getBarcode() + " non trovato.");
-            }
+            Product product = productsByBarcode.get(saleItem.getProduct().getBarcode());
+            quantitiesByProduct.merge(product, saleItem.getQuantitySold(), Integer::sum);
+        }
+        for (Map.Entry<Product, Integer> requested : quantitiesByProduct.entrySet()) {
+            decreaseStock(requested.getKey(), requested.getValue());
+        }
 
-            if (product.getQuantity() < saleItem.getQuantitySold()) {
-                throw new InsufficientProductQuantityException("Quantità venduta superiore alla disponibilità del prodotto " + product.getBarcode());
+        Sale newSale = buildSale(sale, productsByBarcode);
+        Sale savedSale = saleRepository.save(newSale);
+        if (idempotencyKey != null) {
+            idempotencyService.record(idempotencyKey, savedSale.getId(), idempotencyService.fingerprint(sale));
+        }
+        SaleTotals totals = SaleTotals.of(savedSale);
+        salesRollupService.recordSaleCreated(totals);
+        salesCube.recordSaleAdded(savedSale);
+        eventPublisher.publishEvent(SaleChangedEvent.created(savedSale.getId(), totals));
+        return savedSale;
+    }
+
+    /**
+     * Acquisisce un lotto di vendite registrate da un terminale mentre era offline.
+     * Le vendite già ricevute, riconosciute dall'identificativo del terminale, vengono segnalate come duplicati;
+     * le altre vengono verificate in ordine contro la disponibilità residua dei prodotti, bloccati una sola volta
+     * per tutto il lotto. Una vendita non valida viene respinta senza interrompere l'acquisizione delle altre.
+     *
+     * @param entries le vendite del lotto, nell'ordine in cui sono state registrate.
+     * @return l'esito di ciascuna vendita, nello stesso ordine.
+     */
+    @Transactional
+    public BulkSaleResponse ingestSales(List<BulkSaleEntry> entries) {
+        Set<String> clientIds = new HashSet<>();
+        Set<Long> barcodes = new HashSet<>();
+        for (BulkSaleEntry entry : entries) {
+            clientIds.add(entry.getClientId());
+            for (SaleItem saleItem : entry.getSale().getSaleItems()) {
+                if (saleItem.getProduct() != null && saleItem.getProduct().getBarcode() != null) {
+                    barcodes.add(saleItem.getProduct().getBarcode());
+                }
             }
+        }
 
-            saleItem.setPurchasePrice(product.getPurchasePrice() * saleItem.getQuantitySold());
-            saleItem.setSellingPrice(product.getSellingPrice() * saleItem.getQuantitySold());
-            saleItem.setProduct(product);
-            saleItem.setSale(newSale);
+        Map<String, Long> knownSaleIds = new HashMap<>();
+        for (Sale existingSale : saleRepository.findByClientRefIn(clientIds)) {
+            knownSaleIds.put(existingSale.getClientRef(), existingSale.getId());
+        }
+        Map<Long, Product> productsByBarcode = new HashMap<>();
+        if (!barcodes.isEmpty()) {
+            for (Product product : productRepository.findByBarcodeInForUpdate(barcodes)) {
+                productsByBarcode.put(product.getBarcode(), product);
+            }
+        }
 
-            product.setQuantity(product.getQuantity() - saleItem.getQuantitySold());
-            productRepository.save(product);
+        BulkSaleResult[] results = new BulkSaleResult[entries.size()];
+        Map<String, Sale> acceptedByClientId = new LinkedHashMap<>();
+        Map<Integer, String> batchDuplicates = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            BulkSaleEntry entry = entries.get(i);
+            String clientId = entry.getClientId();
+            if (knownSaleIds.containsKey(clientId)) {
+                results[i] = BulkSaleResult.duplicate(clientId, knownSaleIds.get(clientId));
+                continue;
+            }
+            if (acceptedByClientId.containsKey(clientId)) {
+                batchDuplicates.put(i, clientId);
+                continue;
+            }
 
-            totalPrice += saleItem.getSellingPrice();
-            netProfit += (saleItem.getSellingPrice() - saleItem.getPurchasePrice());
-            totalProducts += saleItem.getQuantitySold();
-            newSale.getSaleItems().add(saleItem);
+            // I prodotti sono bloccati e gestiti: la loro quantità fa da disponibilità residua del lotto
+            String error = reserveStock(entry.getSale(), productsByBarcode);
+            if (error != null) {
+                results[i] = BulkSaleResult.rejected(clientId, error);
+                continue;
+            }
+            Sale newSale = buildSale(entry.getSale(), productsByBarcode);
+            newSale.setClientRef(clientId);
+            newSale.setSaleDate(entry.getSale().getSaleDate());
+            acceptedByClientId.put(clientId, newSale);
         }
 
-        newSale.setSaleDate(ZonedDateTime.now());
-        newSale.setDiscount(sale.getDiscount());
-        newSale.setPaymentMethods(sale.getPaymentMethods());
-        newSale.setTotalProducts(totalProducts);
-        newSale.setNote(sale.getNote());
-        newSale.setTotalPrice(totalPrice - sale.getDiscount());
-        newSale.setNetProfit(netProfit - sale.getDiscount());
-        return saleRepository.save(newSale);
+        List<Sale> savedSales = saleRepository.saveAll(acceptedByClientId.values());
+        List<SaleTotals> createdTotals = new ArrayList<>(savedSales.size());
+        for (Sale savedSale : savedSales) {
+            SaleTotals totals = SaleTotals.of(savedSale);
+            createdTotals.add(totals);
+            salesCube.recordSaleAdded(savedSale);
+            eventPublisher.publishEvent(SaleChangedEvent.created(savedSale.getId(), totals));
+        }
+        salesRollupService.recordSalesCreated(createdTotals);
+
+        for (int i = 0; i < entries.size(); i++) {
+            String clientId = entries.get(i).getClientId();
+            if (batchDuplicates.containsKey(i)) {
+                results[i] = BulkSaleResult.duplicate(clientId, acceptedByClientId.get(clientId).getId());
+            } else if (results[i] == null) {
+                results[i] = BulkSaleResult.created(clientId, acceptedByClientId.get(clientId).getId());
+            }
+        }
+        logger.info("Lotto di {} vendite acquisito: {} nuove", entries.size(), savedSales.size());
+        return new BulkSaleResponse(Arrays.asList(results));
     }
 
     @Transactional
     public Sale updateSale(Long saleId, Sale saleDetails) {
-        Sale existingSale = saleRepository.findById(saleId)
+        Sale existingSale = saleRepository.findWithItemsById(saleId)
                 .orElseThrow(() -> new SaleNotFoundException("Vendita con ID " + saleId + " non trovata."));
+        SaleTotals previousTotals = SaleTotals.of(existingSale);
+        salesCube.recordSaleRemoved(existingSale);
 
         existingSale.setDiscount(saleDetails.getDiscount());
         existingSale.setPaymentMethods(saleDetails.getPaymentMethods());
         existingSale.setNote(saleDetails.getNote());
 
-        List<SaleItem> existingSaleItems = existingSale.getSaleItems();
-        List<SaleItem> updatedSaleItems = new ArrayList<>();
-
-        for (SaleItem existingItem : existingSaleItems) {
-            boolean stillExists = saleDetails.getSaleItems().stream()
-                    .anyMatch(newItem -> newItem.getProduct().getBarcode().equals(existingItem.getProduct().getBarcode()));
+        // Righe attuali e quantità già vendute, indicizzate per barcode
+        Map<Long, SaleItem> existingItemsByBarcode = new HashMap<>();
+        Map<Long, Integer> previousQuantities = new HashMap<>();
+        Map<Long, Product> productsByBarcode = new HashMap<>();
+        for (SaleItem existingItem : existingSale.getSaleItems()) {
+            Long barcode = existingItem.getProduct().getBarcode();
+            existingItemsByBarcode.putIfAbsent(barcode, existingItem);
+            previousQuantities.merge(barcode, existingItem.getQuantitySold(), Integer::sum);
+            productsByBarcode.put(barcode, existingItem.getProduct());
+        }
 
-            if (!stillExists) {
-                Product product = existingItem.getProduct();
-                product.setQuantity(product.getQuantity() + existingItem.getQuantitySold());
-                productRepository.save(product);
-            } else {
-                updatedSaleItems.add(existingItem);
-            }
+        // Quantità richieste, indicizzate per barcode nell'ordine ricevuto
+        Map<Long, Integer> requestedQuantities = new LinkedHashMap<>();
+        for (SaleItem saleItemDetails : saleDetails.getSaleItems()) {
+            requestedQuantities.merge(saleItemDetails.getProduct().getBarcode(), saleItemDetails.getQuantitySold(), Integer::sum);
         }
 
-        double totalPrice = 0;
-        double netProfit = 0;
-        long totalProducts = 0;
+        // I prodotti che non compaiono già nella vendita vengono caricati con un'unica query
+        List<SaleItem> newLines = saleDetails.getSaleItems().stream()
+                .filter(item -> !productsByBarcode.containsKey(item.getProduct().getBarcode()))
+                .toList();
+        if (!newLines.isEmpty()) {
+            productsByBarcode.putAll(findProductsByBarcode(newLines));
+        }
 
-        for (SaleItem saleItemDetails : saleDetails.getSaleItems()) {
-            Product product = productRepository.findByBarcode(saleItemDetails.getProduct().getBarcode());
-            if (product == null) {
-                throw new ProductNotFoundException("Prodotto con barcode " + saleItemDetails.getProduct().getBarcode() + " non trovato.");
+        // Una sola variazione netta di magazzino per prodotto, in ordine di ID
+        Map<Product, Integer> stockDeltas = new TreeMap<>(Comparator.comparing(Product::getId));
+        previousQuantities.forEach((barcode, quantity) ->
+                stockDeltas.merge(productsByBarcode.get(barcode), -quantity, Integer::sum));
+        requestedQuantities.forEach((barcode, quantity) ->
+                stockDeltas.merge(productsByBarcode.get(barcode), quantity, Integer::sum));
+        for (Map.Entry<Product, Integer> stockDelta : stockDeltas.entrySet()) {
+            if (stockDelta.getValue() > 0) {
+                decreaseStock(stockDelta.getKey(), stockDelta.getValue());
+            } else if (stockDelta.getValue() < 0) {
+                increaseStock(stockDelta.getKey(), -stockDelta.getValue());
             }
+        }
 
-            SaleItem existingSaleItem = existingSaleItems.stream()
-                    .filter(item -> item.getProduct().getBarcode().equals(saleItemDetails.getProduct().getBarcode()))
-                    .findFirst()
-                    .orElse(null);
-
-            if (existingSaleItem != null) {
-                product.setQuantity(product.getQuantity() + existingSaleItem.getQuantitySold());
-                existingSaleItem.setQuantitySold(saleItemDetails.getQuantitySold());
-                existingSaleItem.setPurchasePrice(product.getPurchasePrice() * saleItemDetails.getQuantitySold());
-                existingSaleItem.setSellingPrice(product.getSellingPrice() * saleItemDetails.getQuantitySold());
-                product.setQuantity(product.getQuantity() - saleItemDetails.getQuantitySold());
-                updatedSaleItems.add(existingSaleItem);
-            } else {
-                SaleItem newSaleItem = new SaleItem();
-                newSaleItem.setProduct(product);
-                newSaleItem.setQuantitySold(saleItemDetails.getQuantitySold());
-                newSaleItem.setPurchasePrice(product.getPurchasePrice() * saleItemDetails.getQuantitySold());
-                newSaleItem.setSellingPrice(product.getSellingPrice() * saleItemDetails.getQuantitySold());
-                newSaleItem.setSale(existingSale);
-                product.setQuantity(product.getQuantity() - saleItemDetails.getQuantitySold());
-                updatedSaleItems.add(newSaleItem);
+        List<SaleItem> updatedSaleItems = new ArrayList<>(requestedQuantities.size());
+        long revenueCents = 0;
+        long costCents = 0;
+        long totalProducts = 0;
+        for (Map.Entry<Long, Integer> requested : requestedQuantities.entrySet()) {
+            Product product = productsByBarcode.get(requested.getKey());
+            int quantity = requested.getValue();
+
+            SaleItem saleItem = existingItemsByBarcode.get(requested.getKey());
+            if (saleItem == null) {
+                saleItem = new SaleItem();
+                saleItem.setProduct(product);
+                saleItem.setSale(existingSale);
             }
-
-            productRepository.save(product);
-            totalPrice += saleItemDetails.getSellingPrice() * saleItemDetails.getQuantitySold();
-            netProfit += (saleItemDetails.getSellingPrice() - saleItemDetails.getPurchasePrice()) * saleItemDetails.getQuantitySold();
-            totalProducts += saleItemDetails.getQuantitySold();
+            long lineRevenueCents = Money.multiply(Money.toCents(product.getSellingPrice()), quantity);
+            long lineCostCents = Money.multiply(Money.toCents(product.getPurchasePrice()), quantity);
+            saleItem.setQuantitySold(quantity);
+            saleItem.setPurchasePrice(Money.toEuros(lineCostCents));
+            saleItem.setSellingPrice(Money.toEuros(lineRevenueCents));
+            updatedSaleItems.add(saleItem);
+
+            revenueCents = Money.add(revenueCents, lineRevenueCents);
+            costCents = Money.add(costCents, lineCostCents);
+            totalProducts += quantity;
         }
 
         existingSale.getSaleItems().clear();
         existingSale.getSaleItems().addAll(updatedSaleItems);
-
-        existingSale.setTotalPrice(totalPrice - saleDetails.getDiscount());
-        existingSale.setNetProfit(netProfit - saleDetails.getDiscount());
-        existingSale.setTotalProducts(totalProducts);
-
-        return saleRepository.save(existingSale);
+        applyTotals(existingSale, revenueCents, costCents, totalProducts);
+
+        Sale savedSale = saleRepository.save(existingSale);
+        SaleTotals totals = SaleTotals.of(savedSale);
+        salesRollupService.recordSaleUpdated(previousTotals, totals);
+        salesCube.recordSaleAdded(savedSale);
+        eventPublisher.publishEvent(SaleChangedEvent.updated(savedSale.getId(), previousTotals, totals));
+        return savedSale;
     }
 
     @Transactional
     public void deleteSale(Long saleId) {
-        Sale sale = saleRepository.findById(saleId)
+        Sale sale = saleRepository.findWithItemsById(saleId)
                 .orElseThrow(() -> new SaleNotFoundException("Vendita con ID " + saleId + " non trovata."));
 
         for (SaleItem saleItem : sale.getSaleItems()) {
-            Product product = saleItem.getProduct();
-            product.setQuantity(product.getQuantity() + saleItem.getQuantitySold());
-            productRepository.save(product);
+            increaseStock(saleItem.getProduct(), saleItem.getQuantitySold());
         }
 
+        SaleTotals totals = SaleTotals.of(sale);
+        salesRollupService.recordSaleDeleted(totals);
+        salesCube.recordSaleRemoved(sale);
         saleRepository.delete(sale);
+        eventPublisher.publishEvent(SaleChangedEvent.deleted(saleId, totals));
+    }
+
+    /**
+     * Costruisce una nuova vendita a partire da quella ricevuta, con righe e totali calcolati
+     * sui prezzi correnti dei prodotti. Le righe vengono ricreate invece di riusare quelle ricevute,
+     * così la richiesta resta intatta e può essere ritentata se la transazione viene annullata.
+     *
+     * @param sale la vendita ricevuta.
+     * @param productsByBarcode i prodotti delle righe, indicizzati per barcode.
+     * @return la vendita da salvare.
+     */
+    private Sale buildSale(Sale sale, Map<Long, Product> productsByBarcode) {
+        long revenueCents = 0;
+        long costCents = 0;
+        long totalProducts = 0;
+
+        Sale newSale = new Sale();
+        newSale.setSaleItems(new ArrayList<>(sale.getSaleItems().size()));
+        for (SaleItem requestedItem : sale.getSaleItems()) {
+            Product product = productsByBarcode.get(requestedItem.getProduct().getBarcode());
+
+            long lineRevenueCents = Money.multiply(Money.toCents(product.getSellingPrice()), requestedItem.getQuantitySold());
+            long lineCostCents = Money.multiply(Money.toCents(product.getPurchasePrice()), requestedItem.getQuantitySold());
+            SaleItem saleItem = new SaleItem();
+            saleItem.setQuantitySold(requestedItem.getQuantitySold());
+            saleItem.setPurchasePrice(Money.toEuros(lineCostCents));
+            saleItem.setSellingPrice(Money.toEuros(lineRevenueCents));
+            saleItem.setProduct(product);
+            saleItem.setSale(newSale);
+
+            revenueCents = Money.add(revenueCents, lineRevenueCents);
+            costCents = Money.add(costCents, lineCostCents);
+            totalProducts += saleItem.getQuantitySold();
+            newSale.getSaleItems().add(saleItem);
+        }
+
+        newSale.setDiscount(sale.getDiscount());
+        newSale.setPaymentMethods(sale.getPaymentMethods());
+        newSale.setNote(sale.getNote());
+        applyTotals(newSale, revenueCents, costCents, totalProducts);
+        return newSale;
+    }
+
+    /**
+     * Imposta sulla vendita incasso e profitto netto, al netto dello sconto, calcolati in centesimi
+     * a partire dai totali delle righe.
+     *
+     * @param sale la vendita, con lo sconto già impostato.
+     * @param revenueCents la somma dei prezzi di vendita delle righe, in centesimi.
+     * @param costCents la somma dei prezzi d'acquisto delle righe, in centesimi.
+     * @param totalProducts il numero di pezzi venduti.
+     */
+    private static void applyTotals(Sale sale, long revenueCents, long costCents, long totalProducts) {
+        long discountCents = Money.toCents(sale.getDiscount());
+        sale.setDiscount(Money.toEuros(discountCents));
+        sale.setTotalPrice(Money.toEuros(Money.subtract(revenueCents, discountCents)));
+        sale.setNetProfit(Money.toEuros(Money.subtract(Money.subtract(revenueCents, costCents), discountCents)));
+        sale.setTotalProducts(totalProducts);
+    }
+
+    /**
+     * Verifica che tutte le righe di una vendita del lotto siano soddisfacibili e, solo in quel caso,
+     * scala le quantità dai prodotti bloccati.
+     *
+     * @param sale la vendita da verificare.
+     * @param productsByBarcode i prodotti bloccati del lotto, indicizzati per barcode.
+     * @return il motivo del rifiuto, o null se la vendita è stata accettata.
+     */
+    private String reserveStock(Sale sale, Map<Long, Product> productsByBarcode) {
+        if (sale.getSaleItems().isEmpty()) {
+            return "La vendita non contiene articoli.";
+        }
+        Map<Product, Integer> quantitiesByProduct = new TreeMap<>(Comparator.comparing(Product::getId));
+        for (SaleItem saleItem : sale.getSaleItems()) {
+            Long barcode = saleItem.getProduct() != null ? saleItem.getProduct().getBarcode() : null;
+            Product product = productsByBarcode.get(barcode);
+            if (product == null) {
+                return "Prodotto con barcode " + barcode + " non trovato.";
+            }
+            if (saleItem.getQuantitySold() <= 0) {
+                return "Quantità non valida per il prodotto " + barcode;
+            }
+            quantitiesByProduct.merge(product, saleItem.getQuantitySold(), Integer::sum);
+        }
+        for (Map.Entry<Product, Integer> requested : quantitiesByProduct.entrySet()) {
+            if (requested.getKey().getQuantity() < requested.getValue()) {
+                return "Quantità venduta superiore alla disponibilità del prodotto " + requested.getKey().getBarcode();
+            }
+        }
+        for (Map.Entry<Product, Integer> requested : quantitiesByProduct.entrySet()) {
+            requested.getKey().setQuantity(requested.getKey().getQuantity() - requested.getValue());
+        }
+        return null;
+    }
+
+    /**
+     * Carica con righe, prodotti e fornitori le vendite con gli ID indicati, mantenendo l'ordine ricevuto.
+     *
+     * @param saleIds gli ID delle vendite, nell'ordine desiderato.
+     * @return le vendite nello stesso ordine degli ID.
+     */
+    private List<Sale> findWithItemsInOrder(List<Long> saleIds) {
+        if (saleIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Sale> salesById = new HashMap<>();
+        for (Sale sale : saleRepository.findWithItemsByIdIn(saleIds)) {
+            salesById.put(sale.getId(), sale);
+        }
+        List<Sale> sales = new ArrayList<>(saleIds.size());
+        for (Long saleId : saleIds) {
+            Sale sale = salesById.get(saleId);
+            if (sale != null) {
+                sales.add(sale);
+            }
+        }
+        return sales;
+    }
+
+    private static List<SaleView> toViews(List<Sale> sales) {
+        return sales.stream().map(SaleView::of).toList();
+    }
+
+    /**
+     * Carica dal database, bloccandoli in scrittura, tutti i prodotti referenziati dalle righe di una vendita,
+     * con un'unica query. I prezzi della vendita vengono così letti dalle righe bloccate nella stessa transazione
+     * che scala le giacenze: una modifica di prezzo o una cancellazione fatta da un'altra istanza del backend
+     * è sempre visibile, a differenza del catalogo in memoria, che resta per le sole ricerche per barcode.
+     *
+     * @param saleItems le righe della vendita.
+     * @return i prodotti indicizzati per barcode.
+     * @throws ProductNotFoundException se uno dei barcode non corrisponde ad alcun prodotto.
+     */
+    private Map<Long, Product> findProductsByBarcode(List<SaleItem> saleItems) {
+        Set<Long> barcodes = new HashSet<>();
+        for (SaleItem saleItem : saleItems) {
+            barcodes.add(saleItem.getProduct().getBarcode());
+        }
+
+        Map<Long, Product> productsByBarcode = new HashMap<>();
+        for (Product product : productRepository.findByBarcodeInForUpdate(barcodes)) {
+            productsByBarcode.put(product.getBarcode(), product);
+        }
+        for (Long barcode : barcodes) {
+            if (!productsByBarcode.containsKey(barcode)) {
+                throw new ProductNotFoundException("Prodotto con barcode " + barcode + " non trovato.");
+            }
+        }
+        return productsByBarcode;
+    }
+
+    /**
+     * Scala la quantità disponibile di un prodotto con un aggiornamento atomico e condizionato.
+     * Se la disponibilità non è sufficiente nessuna riga viene aggiornata e la vendita viene respinta.
+     *
+     * @param product il prodotto venduto.
+     * @param quantity la quantità da scalare.
+     * @throws InsufficientProductQuantityException se la disponibilità del prodotto non è sufficiente.
+     */
+    private void decreaseStock(Product product, int quantity) {
+        if (productRepository.decrementQuantity(product.getId(), quantity) == 0) {
+            throw new InsufficientProductQuantityException("Quantità venduta superiore alla disponibilità del prodotto " + product.getBarcode());
+        }
+    }
+
+    /**
+     * Restituisce a magazzino una quantità di prodotto con un aggiornamento atomico.
+     *
+     * @param product il prodotto da riassortire.
+     * @param quantity la quantità da restituire.
+     */
+    private void increaseStock(Product product, int quantity) {
+        productRepository.incrementQuantity(product.getId(), quantity);
     }
 }
@@ -0,0 +1,351 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.dto.MonthlySalesRollup;
+import com.azienda.erp.erp_backend.dto.SaleTotals;
+import com.azienda.erp.erp_backend.dto.SalesGrandTotals;
+import com.azienda.erp.erp_backend.dto.SalesSeries;
+import com.azienda.erp.erp_backend.dto.SalesSeriesPoint;
+import com.azienda.erp.erp_backend.entity.SalesDailyRollup;
+import com.azienda.erp.erp_backend.exception.InvalidDateRangeException;
+import com.azienda.erp.erp_backend.journal.SaleEventJournal;
+import com.azienda.erp.erp_backend.money.Money;
+import com.azienda.erp.erp_backend.repository.SaleRepository;
+import com.azienda.erp.erp_backend.repository.SalesDailyRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Servizio per i totali giornalieri e mensili delle vendite.
+ * I totali giornalieri vengono aggiornati con variazioni incrementali nella stessa transazione
+ * che crea, modifica o cancella la vendita; quelli mensili si ottengono sommando i giorni del mese.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesRollupService.class);
+
+    /**
+     * Numero massimo di punti per serie storica.
+     */
+    public static final int MAX_SERIES_POINTS = 5000;
+
+    private final SalesDailyRollupRepository rollupRepository;
+    private final SaleRepository saleRepository;
+    private final SaleEventJournal saleEventJournal;
+    private final boolean rebuildOnStartup;
+
+    public SalesRollupService(SalesDailyRollupRepository rollupRepository, SaleRepository saleRepository,
+                              SaleEventJournal saleEventJournal,
+                              @Value("${erp.sales.rollup.rebuild-on-startup:false}") boolean rebuildOnStartup) {
+        this.rollupRepository = rollupRepository;
+        this.saleRepository = saleRepository;
+        this.saleEventJournal = saleEventJournal;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    /**
+     * Aggiunge ai totali del giorno il contributo di una nuova vendita.
+     *
+     * @param totals il contributo della vendita creata.
+     */
+    @Transactional
+    public void recordSaleCreated(SaleTotals totals) {
+        apply(totals, 1);
+    }
+
+    /**
+     * Sostituisce nei totali il contributo precedente di una vendita con quello aggiornato.
+     * Se la vendita resta nello stesso giorno viene scritta un'unica variazione netta.
+     *
+     * @param before il contributo della vendita prima della modifica.
+     * @param after il contributo della vendita dopo la modifica.
+     */
+    @Transactional
+    public void recordSaleUpdated(SaleTotals before, SaleTotals after) {
+        if (before.getDay().equals(after.getDay())) {
+            rollupRepository.applyDelta(after.getDay(), 0,
+                    Money.subtract(after.getRevenueCents(), before.getRevenueCents()),
+                    Money.subtract(after.getNetProfitCents(), before.getNetProfitCents()),
+                    Money.subtract(after.getDiscountCents(), before.getDiscountCents()),
+                    after.getUnits() - before.getUnits());
+        } else {
+            apply(before, -1);
+            apply(after, 1);
+        }
+    }
+
+    /**
+     * Rimuove dai totali del giorno il contributo di una vendita cancellata.
+     *
+     * @param totals il contributo della vendita cancellata.
+     */
+    @Transactional
+    public void recordSaleDeleted(SaleTotals totals) {
+        apply(totals, -1);
+    }
+
+    /**
+     * Aggiunge ai totali il contributo di un gruppo di nuove vendite, con una sola variazione per giorno.
+     *
+     * @param totals i contributi delle vendite create.
+     */
+    @Transactional
+    public void recordSalesCreated(Collection<SaleTotals> totals) {
+        Map<LocalDate, DayTotals> rollups = new TreeMap<>();
+        totals.forEach(sale -> accumulate(rollups, sale, 1));
+        applyAll(rollups.values());
+    }
+
+    /**
+     * Recupera i totali giornalieri tra due giorni, estremi inclusi.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return i totali dei giorni con almeno una vendita registrata.
+     * @throws InvalidDateRangeException se l'intervallo di date non è valido.
+     */
+    public List<SalesDailyRollup> getDailyRollups(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return rollupRepository.findByDayBetweenOrderByDayAsc(from, to);
+    }
+
+    /**
+     * Recupera i totali mensili tra due giorni, estremi inclusi, sommando i totali giornalieri.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return i totali dei mesi con almeno una vendita registrata.
+     * @throws InvalidDateRangeException se l'intervallo di date non è valido.
+     */
+    public List<MonthlySalesRollup> getMonthlyRollups(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return rollupRepository.findMonthlyBetween(from, to);
+    }
+
+    /**
+     * Calcola la serie storica di numero di vendite, incasso e profitto netto tra due giorni, estremi inclusi.
+     * La serie oraria è aggregata dal database sul giorno e sull'ora locali delle vendite; le altre granularità
+     * sommano i totali giornalieri già calcolati. La serie è densa: gli intervalli senza vendite hanno valori a zero.
+     * Il primo e l'ultimo intervallo settimanale o mensile contano solo i giorni compresi nel periodo.
+     * Nel giorno del passaggio all'ora solare le vendite delle due ore ripetute finiscono nello stesso punto,
+     * in quello del passaggio all'ora legale l'ora saltata resta a zero.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @param granularity la durata di ogni intervallo.
+     * @return la serie, in ordine cronologico.
+     * @throws InvalidDateRangeException se l'intervallo di date non è valido o produce troppi punti.
+     */
+    @Transactional(readOnly = true)
+    public SalesSeries getSeries(LocalDate from, LocalDate to, SeriesGranularity granularity) {
+        checkRange(from, to);
+        LocalDateTime first = granularity.bucketStart(from.atStartOfDay());
+        long size = granularity.bucketIndex(first, to.atTime(23, 0)) + 1;
+        if (size > MAX_SERIES_POINTS) {
+            throw new InvalidDateRangeException("Il periodo richiesto produce più di " + MAX_SERIES_POINTS
+                    + " punti: ridurre il periodo o usare una granularità più ampia.");
+        }
+
+        int points = (int) size;
+        long[] counts = new long[points];
+        long[] revenueCents = new long[points];
+        long[] netProfitCents = new long[points];
+        if (granularity == SeriesGranularity.HOUR) {
+            for (SalesSeriesPoint hour : saleRepository.sumByLocalHourBetween(from, to)) {
+                int index = (int) granularity.bucketIndex(first, hour.getStart());
+                counts[index] += hour.getCount();
+                revenueCents[index] += Money.toCents(hour.getRevenue());
+                netProfitCents[index] += Money.toCents(hour.getNetProfit());
+            }
+        } else {
+            for (SalesDailyRollup day : rollupRepository.findByDayBetweenOrderByDayAsc(from, to)) {
+                int index = (int) granularity.bucketIndex(first, day.getDay().atStartOfDay());
+                counts[index] += day.getSaleCount();
+                revenueCents[index] += Money.toCents(day.getRevenue());
+                netProfitCents[index] += Money.toCents(day.getNetProfit());
+            }
+        }
+
+        List<SalesSeriesPoint> series = new ArrayList<>(points);
+        LocalDateTime start = first;
+        for (int i = 0; i < points; i++, start = granularity.next(start)) {
+            series.add(new SalesSeriesPoint(start, counts[i],
+                    Money.toEuros(revenueCents[i]), Money.toEuros(netProfitCents[i])));
+        }
+        return new SalesSeries(from, to, granularity, series);
+    }
+
+    /**
+     * Ricalcola da zero i totali giornalieri a partire dalle vendite registrate.
+     * Da usare dopo un'importazione di dati o per riallineare i totali; le vendite registrate
+     * durante la ricostruzione possono non essere conteggiate, quindi va eseguita a negozio fermo.
+     *
+     * @return il numero di giorni ricostruiti.
+     */
+    @Transactional
+    public int rebuild() {
+        Map<LocalDate, DayTotals> rollups = new TreeMap<>();
+        try (Stream<SaleTotals> totals = saleRepository.streamAllTotals()) {
+            totals.forEach(sale -> accumulate(rollups, sale, 1));
+        }
+
+        rollupRepository.deleteAllInBatch();
+        applyAll(rollups.values());
+        logger.info("Totali giornalieri delle vendite ricostruiti: {} giorni", rollups.size());
+        return rollups.size();
+    }
+
+    /**
+     * Ricalcola da zero i totali giornalieri rileggendo il journal delle vendite invece delle tabelle.
+     * Il journal è completo solo se è attivo dalla prima vendita registrata e nessuna scrittura è fallita.
+     * Il contatore degli errori di scrittura riparte a ogni avvio, quindi il risultato viene anche confrontato
+     * con il database: i totali complessivi di vendite, importi e pezzi e il numero di vendite di ogni giorno,
+     * così eventi mancanti di giorni diversi non si compensano nel totale. Se dall'avvio il journal ha perso
+     * degli eventi, se uno dei confronti fallisce o se il journal non è leggibile, i totali vengono ricostruiti
+     * dalle vendite come in {@link #rebuild()}.
+     *
+     * @return il numero di giorni ricostruiti.
+     */
+    @Transactional
+    public int rebuildFromJournal() {
+        if (!saleEventJournal.isEnabled()) {
+            return rebuild();
+        }
+        long writeFailures = saleEventJournal.getWriteFailures();
+        if (writeFailures > 0) {
+            logger.warn("{} eventi non sono stati scritti nel journal delle vendite, ricostruzione dalle vendite",
+                    writeFailures);
+            return rebuild();
+        }
+        Map<LocalDate, DayTotals> rollups = new TreeMap<>();
+        try {
+            long events = saleEventJournal.replay(event -> {
+                if (event.getBefore() != null) {
+                    accumulate(rollups, event.getBefore(), -1);
+                }
+                if (event.getAfter() != null) {
+                    accumulate(rollups, event.getAfter(), 1);
+                }
+            });
+            logger.debug("Riletti {} eventi dal journal delle vendite", events);
+        } catch (IOException ex) {
+            logger.warn("Journal delle vendite non leggibile, ricostruzione dalle vendite: ", ex);
+            return rebuild();
+        }
+        SalesGrandTotals journalTotals = sumTotals(rollups.values());
+        SalesGrandTotals storedTotals = saleRepository.sumAllTotals();
+        if (!journalTotals.equals(storedTotals)) {
+            logger.warn("I totali del journal ({}) non coincidono con quelli del database ({}), "
+                    + "ricostruzione dalle vendite", journalTotals, storedTotals);
+            return rebuild();
+        }
+
+        rollups.values().removeIf(rollup -> rollup.saleCount == 0);
+        Map<LocalDate, Long> journalCounts = new TreeMap<>();
+        rollups.values().forEach(rollup -> journalCounts.put(rollup.day, rollup.saleCount));
+        Map<LocalDate, Long> storedCounts = new TreeMap<>();
+        saleRepository.countByLocalDate().forEach(day -> storedCounts.put(day.getDay(), day.getCount()));
+        if (!journalCounts.equals(storedCounts)) {
+            logger.warn("Il numero di vendite per giorno del journal non coincide con quello del database, "
+                    + "ricostruzione dalle vendite");
+            return rebuild();
+        }
+
+        rollupRepository.deleteAllInBatch();
+        applyAll(rollups.values());
+        logger.info("Totali giornalieri delle vendite ricostruiti dal journal: {} giorni", rollups.size());
+        return rollups.size();
+    }
+
+    /**
+     * Ricostruisce i totali all'avvio, se richiesto dalla configurazione oppure se la tabella dei totali
+     * è vuota mentre esistono vendite registrate, come accade al primo avvio su un database già in uso.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildAtStartup() {
+        if (rebuildOnStartup) {
+            rebuildFromJournal();
+        } else if (rollupRepository.count() == 0 && saleRepository.count() > 0) {
+            logger.info("Totali giornalieri delle vendite assenti, ricostruzione iniziale");
+            rebuildFromJournal();
+        }
+    }
+
+    private static void accumulate(Map<LocalDate, DayTotals> rollups, SaleTotals sale, int sign) {
+        DayTotals rollup = rollups.computeIfAbsent(sale.getDay(), DayTotals::new);
+        rollup.saleCount += sign;
+        rollup.revenueCents = Money.add(rollup.revenueCents, sign * sale.getRevenueCents());
+        rollup.netProfitCents = Money.add(rollup.netProfitCents, sign * sale.getNetProfitCents());
+        rollup.discountCents = Money.add(rollup.discountCents, sign * sale.getDiscountCents());
+        rollup.units += sign * sale.getUnits();
+    }
+
+    private static SalesGrandTotals sumTotals(Collection<DayTotals> rollups) {
+        long saleCount = 0;
+        long revenueCents = 0;
+        long netProfitCents = 0;
+        long discountCents = 0;
+        long units = 0;
+        for (DayTotals rollup : rollups) {
+            saleCount += rollup.saleCount;
+            revenueCents += rollup.revenueCents;
+            netProfitCents += rollup.netProfitCents;
+            discountCents += rollup.discountCents;
+            units += rollup.units;
+        }
+        return new SalesGrandTotals(saleCount, revenueCents, netProfitCents, discountCents, units);
+    }
+
+    private void applyAll(Collection<DayTotals> rollups) {
+        for (DayTotals rollup : rollups) {
+            rollupRepository.applyDelta(rollup.day, rollup.saleCount, rollup.revenueCents,
+                    rollup.netProfitCents, rollup.discountCents, rollup.units);
+        }
+    }
+
+    private void apply(SaleTotals totals, int sign) {
+        rollupRepository.applyDelta(totals.getDay(), sign,
+                sign * totals.getRevenueCents(),
+                sign * totals.getNetProfitCents(),
+                sign * totals.getDiscountCents(),
+                sign * totals.getUnits());
+    }
+
+    private void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new InvalidDateRangeException("La data iniziale non può essere successiva alla data finale.");
+        }
+    }
+
+    /**
+     * Totali di un giorno in corso di calcolo, con gli importi in centesimi.
+     */
+    private static final class DayTotals {
+        private final LocalDate day;
+        private long saleCount;
+        private long revenueCents;
+        private long netProfitCents;
+        private long discountCents;
+        private long units;
+
+        private DayTotals(LocalDate day) {
+            this.day = day;
+        }
+    }
+}
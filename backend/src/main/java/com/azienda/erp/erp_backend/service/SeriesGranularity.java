@@ -0,0 +1,73 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.exception.UnsupportedGranularityException;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+/**
+ * Granularità delle serie storiche delle vendite. Le settimane iniziano di lunedì.
+ */
+public enum SeriesGranularity {
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS),
+    WEEK(ChronoUnit.WEEKS),
+    MONTH(ChronoUnit.MONTHS);
+
+    private final ChronoUnit unit;
+
+    SeriesGranularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Restituisce l'inizio dell'intervallo che contiene il momento indicato.
+     *
+     * @param time un momento in ora locale.
+     * @return l'inizio del suo intervallo.
+     */
+    public LocalDateTime bucketStart(LocalDateTime time) {
+        return switch (this) {
+            case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+            case WEEK -> time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        };
+    }
+
+    /**
+     * Restituisce la posizione dell'intervallo che contiene un momento, contando dall'intervallo iniziale.
+     *
+     * @param first l'inizio del primo intervallo.
+     * @param time un momento successivo.
+     * @return la posizione dell'intervallo, a partire da zero.
+     */
+    public long bucketIndex(LocalDateTime first, LocalDateTime time) {
+        return unit.between(first, bucketStart(time));
+    }
+
+    /**
+     * Restituisce l'inizio dell'intervallo successivo.
+     */
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return bucketStart.plus(1, unit);
+    }
+
+    /**
+     * Risolve la granularità a partire dal parametro della richiesta, senza distinzione tra maiuscole e minuscole.
+     *
+     * @param value il nome della granularità.
+     * @return la granularità corrispondente.
+     * @throws UnsupportedGranularityException se la granularità non è supportata.
+     */
+    public static SeriesGranularity from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new UnsupportedGranularityException("Granularità non supportata: " + value);
+        }
+    }
+}
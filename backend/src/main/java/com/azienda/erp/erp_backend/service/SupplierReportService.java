@@ -0,0 +1,121 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.dto.SupplierProfitability;
+import com.azienda.erp.erp_backend.exception.InvalidDateRangeException;
+import com.azienda.erp.erp_backend.repository.SaleItemRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servizio per la redditività dei fornitori.
+ * Il periodo richiesto viene diviso in blocchi di giorni, ciascuno aggregato nel database da una query
+ * separata; i blocchi sono eseguiti in parallelo e i totali parziali vengono poi sommati per fornitore.
+ * Le query girano su un pool di thread dedicato e di dimensione fissa, condiviso da tutti i report:
+ * i report in corso non occupano mai più connessioni del database di quanti sono i thread del pool
+ * e lasciano il resto delle connessioni alle vendite.
+ */
+@Service
+public class SupplierReportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SupplierReportService.class);
+
+    /**
+     * Numero massimo di blocchi per report: su periodi molto lunghi i blocchi vengono allargati.
+     */
+    private static final int MAX_CHUNKS = 256;
+
+    private final SaleItemRepository saleItemRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int chunkDays;
+    private final ExecutorService executor;
+
+    public SupplierReportService(SaleItemRepository saleItemRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${erp.reports.parallelism:2}") int parallelism,
+                                 @Value("${erp.reports.chunk-days:31}") int chunkDays) {
+        this.saleItemRepository = saleItemRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.chunkDays = Math.max(1, chunkDays);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "report-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Ferma il pool dei report all'arresto dell'applicazione.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Calcola incasso, costo e margine per fornitore tra due giorni, estremi inclusi.
+     *
+     * @param from il primo giorno incluso.
+     * @param to l'ultimo giorno incluso.
+     * @return i fornitori con almeno un prodotto venduto nel periodo, dal margine più alto.
+     * @throws InvalidDateRangeException se l'intervallo di date non è valido.
+     */
+    public List<SupplierProfitability> getSupplierProfitability(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new InvalidDateRangeException("La data iniziale non può essere successiva alla data finale.");
+        }
+        long start = System.nanoTime();
+        long totalDays = ChronoUnit.DAYS.between(from, to) + 1;
+        long daysPerChunk = Math.max(chunkDays, (totalDays + MAX_CHUNKS - 1) / MAX_CHUNKS);
+
+        List<CompletableFuture<List<SupplierProfitability>>> chunks = new ArrayList<>();
+        for (LocalDate chunkStart = from; !chunkStart.isAfter(to); chunkStart = chunkStart.plusDays(daysPerChunk)) {
+            LocalDate chunkFrom = chunkStart;
+            LocalDate chunkEnd = chunkStart.plusDays(daysPerChunk - 1);
+            LocalDate chunkTo = chunkEnd.isAfter(to) ? to : chunkEnd;
+            chunks.add(CompletableFuture.supplyAsync(() -> readOnlyTransaction.execute(
+                    status -> saleItemRepository.sumBySupplierBetween(chunkFrom, chunkTo)), executor));
+        }
+
+        Map<Long, SupplierProfitability> bySupplier = new HashMap<>();
+        try {
+            for (CompletableFuture<List<SupplierProfitability>> chunk : chunks) {
+                for (SupplierProfitability partial : chunk.join()) {
+                    bySupplier.merge(partial.getSupplierId(), partial, SupplierProfitability::plus);
+                }
+            }
+        } catch (CompletionException ex) {
+            chunks.forEach(chunk -> chunk.cancel(false));
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+
+        List<SupplierProfitability> report = new ArrayList<>(bySupplier.values());
+        report.sort(Comparator.comparingDouble(SupplierProfitability::getMargin).reversed()
+                .thenComparing(SupplierProfitability::getSupplierId));
+        logger.debug("Redditività fornitori dal {} al {} calcolata in {} blocchi e {} ms",
+                from, to, chunks.size(), (System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+}
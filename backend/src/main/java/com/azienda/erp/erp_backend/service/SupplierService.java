@@ -26,6 +26,7 @@ public class SupplierService {
      *
      * @return lista di tutti i fornitori.
      */
+    @Transactional(readOnly = true)
     public List<Supplier> getAllSuppliers() {
         return supplierRepository.findAll();
     }
@@ -48,6 +49,7 @@ public class SupplierService {
      * @return il fornitore trovato.
      * @throws SupplierNotFoundException se il fornitore non viene trovato.
      */
+    @Transactional(readOnly = true)
     public Supplier getSupplierById(Long id) {
         return supplierRepository.findById(id)
                 .orElseThrow(() -> new SupplierNotFoundException("Fornitore con ID " + id + " non trovato."));
@@ -0,0 +1,182 @@
+package com.azienda.erp.erp_backend.catalog;
+
+import com.azienda.erp.erp_backend.dto.CatalogProduct;
+import com.azienda.erp.erp_backend.entity.Product;
+import com.azienda.erp.erp_backend.entity.Supplier;
+import com.azienda.erp.erp_backend.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifica la tabella dei barcode del catalogo e la visibilità delle modifiche rispetto al commit.
+ * Il repository simulato non trova alcun prodotto, quindi un barcode risolto proviene sempre dalla memoria.
+ */
+class ProductCatalogTest {
+
+    // Numero di celle della tabella con la capacità iniziale
+    private static final int MASK = 2 * 1024 - 1;
+
+    private ProductRepository productRepository;
+
+    @BeforeEach
+    void createRepository() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.findCatalogByBarcodeIn(any())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void removalKeepsTheRestOfTheProbeClusterReachable() {
+        List<Long> cluster = barcodesWithHome(17, 4);
+        long neighbour = barcodesWithHome(18, 1).get(0);
+        List<Long> all = new ArrayList<>(cluster);
+        all.add(neighbour);
+        ProductCatalog catalog = loadedCatalog(all);
+
+        // Il vicino, con posizione ideale nella cella successiva, finisce dopo i quattro barcode della sequenza
+        catalog.recordProductRemoved(product(cluster.get(0)));
+        catalog.recordProductRemoved(product(cluster.get(2)));
+
+        assertThat(catalog.resolve(List.of(cluster.get(0), cluster.get(2)))).isEmpty();
+        assertThat(catalog.resolve(List.of(cluster.get(1), cluster.get(3), neighbour)))
+                .containsOnlyKeys(cluster.get(1), cluster.get(3), neighbour);
+        assertThat(catalog.size()).isEqualTo(3);
+    }
+
+    @Test
+    void removalKeepsAClusterThatWrapsAroundTheTableReachable() {
+        List<Long> cluster = barcodesWithHome(MASK, 3);
+        long wrapped = barcodesWithHome(0, 1).get(0);
+        List<Long> all = new ArrayList<>(cluster);
+        all.add(wrapped);
+        ProductCatalog catalog = loadedCatalog(all);
+
+        catalog.recordProductRemoved(product(cluster.get(0)));
+
+        assertThat(catalog.resolve(List.of(cluster.get(1), cluster.get(2), wrapped)))
+                .containsOnlyKeys(cluster.get(1), cluster.get(2), wrapped);
+        assertThat(catalog.resolve(List.of(cluster.get(0)))).isEmpty();
+    }
+
+    @Test
+    void removedSlotIsReusedWithoutLosingOtherProducts() {
+        List<Long> cluster = barcodesWithHome(42, 3);
+        ProductCatalog catalog = loadedCatalog(cluster);
+
+        catalog.recordProductRemoved(product(cluster.get(1)));
+        long replacement = barcodesWithHome(42, 4).get(3);
+        catalog.recordProductSaved(null, product(replacement));
+
+        assertThat(catalog.resolve(List.of(cluster.get(0), cluster.get(2), replacement)))
+                .containsOnlyKeys(cluster.get(0), cluster.get(2), replacement);
+        assertThat(catalog.resolve(List.of(replacement)).get(replacement).getName()).isEqualTo("Prodotto " + replacement);
+    }
+
+    @Test
+    void changesBecomeVisibleOnlyAfterCommit() {
+        long existing = 1001L;
+        ProductCatalog catalog = loadedCatalog(List.of(existing));
+        long created = 1002L;
+        long renumbered = 1003L;
+
+        TransactionSynchronizationManager.initSynchronization();
+        catalog.recordProductSaved(null, product(created));
+        catalog.recordProductSaved(existing, product(renumbered));
+
+        assertThat(catalog.resolve(List.of(existing, created, renumbered))).containsOnlyKeys(existing);
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(catalog.resolve(List.of(existing, created, renumbered))).containsOnlyKeys(created, renumbered);
+    }
+
+    @Test
+    void changesAreDiscardedOnRollback() {
+        long existing = 2001L;
+        ProductCatalog catalog = loadedCatalog(List.of(existing));
+
+        TransactionSynchronizationManager.initSynchronization();
+        catalog.recordProductSaved(null, product(2002L));
+        catalog.recordProductRemoved(product(existing));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(catalog.resolve(List.of(existing, 2002L))).containsOnlyKeys(existing);
+
+        // Una transazione successiva non eredita le modifiche annullate
+        TransactionSynchronizationManager.initSynchronization();
+        catalog.recordProductSaved(null, product(2003L));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(catalog.resolve(List.of(existing, 2002L, 2003L))).containsOnlyKeys(existing, 2003L);
+    }
+
+    /**
+     * Conclude la transazione simulata eseguendo le sincronizzazioni registrate, come il gestore delle transazioni.
+     */
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, status);
+    }
+
+    private ProductCatalog loadedCatalog(List<Long> barcodes) {
+        when(productRepository.streamCatalog()).thenReturn(barcodes.stream().map(ProductCatalogTest::catalogProduct));
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        ProductCatalog catalog = new ProductCatalog(productRepository, transactionManager, true);
+        catalog.afterSingletonsInstantiated();
+        assertThat(catalog.size()).isEqualTo(barcodes.size());
+        return catalog;
+    }
+
+    /**
+     * Cerca i primi barcode la cui posizione ideale nella tabella è la cella indicata.
+     */
+    private static List<Long> barcodesWithHome(int home, int count) {
+        return Stream.iterate(1L, barcode -> barcode + 1)
+                .filter(barcode -> (ProductCatalog.hash(barcode) & MASK) == home)
+                .limit(count)
+                .toList();
+    }
+
+    private static CatalogProduct catalogProduct(long barcode) {
+        return new CatalogProduct(barcode, barcode, "Prodotto " + barcode, 1L, 1.0, 2.0);
+    }
+
+    private static Product product(long barcode) {
+        Supplier supplier = new Supplier();
+        supplier.setId(1L);
+        Product product = new Product();
+        product.setId(barcode);
+        product.setBarcode(barcode);
+        product.setName("Prodotto " + barcode);
+        product.setSupplier(supplier);
+        product.setPurchasePrice(1.0);
+        product.setSellingPrice(2.0);
+        return product;
+    }
+}
@@ -0,0 +1,188 @@
+package com.azienda.erp.erp_backend.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica l'instradamento delle connessioni tra primario e replica su due pool H2 distinti,
+ * ognuno con una tabella che riporta il nome del proprio database.
+ */
+@SpringJUnitConfig(ReadReplicaRoutingDataSourceTest.Config.class)
+class ReadReplicaRoutingDataSourceTest {
+
+    private static final long RETRY_AFTER_MS = 1500;
+
+    @Autowired
+    private PoolReader reader;
+
+    @Autowired
+    private SwitchableDataSource replica;
+
+    @Autowired
+    private ReadReplicaRoutingDataSource routingDataSource;
+
+    @AfterEach
+    void restoreReplica() {
+        replica.failing = false;
+    }
+
+    @Test
+    void readOnlyTransactionUsesReplica() {
+        assertThat(reader.readOnly()).isEqualTo("replica");
+    }
+
+    @Test
+    void readWriteTransactionUsesPrimary() {
+        assertThat(reader.readWrite()).isEqualTo("primary");
+    }
+
+    @Test
+    void accessWithoutTransactionUsesPrimary() {
+        assertThat(reader.withoutTransaction()).isEqualTo("primary");
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    void readsFallBackToPrimaryWhileReplicaIsExcluded() throws InterruptedException {
+        replica.failing = true;
+        long failedAt = System.nanoTime();
+        assertThat(reader.readOnly()).isEqualTo("primary");
+        assertThat(routingDataSource.isReplicaAvailable()).isFalse();
+
+        // La replica torna raggiungibile, ma resta esclusa fino al termine dell'intervallo
+        replica.failing = false;
+        assertThat(reader.readOnly()).isEqualTo("primary");
+        assertThat(elapsedMillis(failedAt)).isLessThan(RETRY_AFTER_MS);
+
+        Thread.sleep(RETRY_AFTER_MS - elapsedMillis(failedAt) + 100);
+        assertThat(routingDataSource.isReplicaAvailable()).isTrue();
+        assertThat(reader.readOnly()).isEqualTo("replica");
+    }
+
+    private static long elapsedMillis(long since) {
+        return (System.nanoTime() - since) / 1_000_000;
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class Config {
+
+        @Bean(destroyMethod = "close")
+        HikariDataSource primaryDataSource() {
+            return pool("primary");
+        }
+
+        @Bean(destroyMethod = "close")
+        HikariDataSource replicaPool() {
+            return pool("replica");
+        }
+
+        @Bean
+        SwitchableDataSource replicaDataSource(HikariDataSource replicaPool) {
+            return new SwitchableDataSource(replicaPool);
+        }
+
+        @Bean
+        ReadReplicaRoutingDataSource routingDataSource(HikariDataSource primaryDataSource,
+                                                       SwitchableDataSource replicaDataSource) {
+            return new ReadReplicaRoutingDataSource(primaryDataSource, replicaDataSource, RETRY_AFTER_MS);
+        }
+
+        @Bean
+        DataSource dataSource(ReadReplicaRoutingDataSource routingDataSource) {
+            return new LazyConnectionDataSourceProxy(routingDataSource);
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        PoolReader poolReader(DataSource dataSource) {
+            return new PoolReader(new JdbcTemplate(dataSource));
+        }
+
+        private static HikariDataSource pool(String name) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl("jdbc:h2:mem:" + name + "_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+            dataSource.setPoolName(name);
+            dataSource.setMaximumPoolSize(2);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("CREATE TABLE pool (name VARCHAR(16))");
+            jdbcTemplate.update("INSERT INTO pool (name) VALUES (?)", name);
+            return dataSource;
+        }
+    }
+
+    /**
+     * Legge il nome del database che ha fornito la connessione, con transazioni di tipo diverso.
+     */
+    static class PoolReader {
+
+        private final JdbcTemplate jdbcTemplate;
+
+        PoolReader(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @Transactional(readOnly = true)
+        public String readOnly() {
+            return currentPool();
+        }
+
+        @Transactional
+        public String readWrite() {
+            return currentPool();
+        }
+
+        public String withoutTransaction() {
+            return currentPool();
+        }
+
+        private String currentPool() {
+            return jdbcTemplate.queryForObject("SELECT name FROM pool", String.class);
+        }
+    }
+
+    /**
+     * Replica che può essere resa irraggiungibile: finché è guasta non concede connessioni.
+     */
+    static class SwitchableDataSource extends DelegatingDataSource {
+
+        volatile boolean failing;
+
+        SwitchableDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (failing) {
+                throw new SQLTransientConnectionException("Replica non raggiungibile");
+            }
+            return super.getConnection();
+        }
+    }
+}
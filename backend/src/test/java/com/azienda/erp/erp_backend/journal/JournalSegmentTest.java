@@ -0,0 +1,114 @@
+package com.azienda.erp.erp_backend.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica il formato dei segmenti del journal su file temporanei: i record danneggiati o troncati
+ * interrompono la lettura e le scritture successive ripartono dall'ultimo record valido.
+ */
+class JournalSegmentTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int PAYLOAD_SIZE = 24;
+    private static final int RECORD_SIZE = RECORD_HEADER_SIZE + PAYLOAD_SIZE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAreReadBackInOrder() throws IOException {
+        Path path = segmentWith(1, 2, 3);
+
+        assertThat(readSequences(JournalSegment.open(path, false))).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void readStopsAtARecordWithAWrongCrc() throws IOException {
+        Path path = segmentWith(1, 2, 3);
+        // Un byte del contenuto del secondo record cambia senza che cambi il CRC
+        overwrite(path, recordOffset(1) + RECORD_HEADER_SIZE + Long.BYTES, new byte[]{(byte) 0xFF});
+
+        assertThat(readSequences(JournalSegment.open(path, false))).containsExactly(1L);
+    }
+
+    @Test
+    void readStopsAtATornTail() throws IOException {
+        Path path = segmentWith(1, 2, 3);
+        // Scrittura interrotta: la lunghezza del terzo record è su disco, metà del contenuto no
+        overwrite(path, recordOffset(2) + RECORD_HEADER_SIZE + PAYLOAD_SIZE / 2, new byte[PAYLOAD_SIZE / 2]);
+
+        JournalSegment segment = JournalSegment.open(path, false);
+        assertThat(readSequences(segment)).containsExactly(1L, 2L);
+        assertThat(segment.getNextSequence()).isEqualTo(3);
+    }
+
+    @Test
+    void appendAfterATornRecordReplacesItWithoutRevivingLaterRecords() throws IOException {
+        Path path = segmentWith(1, 2, 3, 4);
+        // Il secondo record non è arrivato su disco, quelli successivi sì
+        overwrite(path, recordOffset(1) + RECORD_HEADER_SIZE, new byte[PAYLOAD_SIZE]);
+
+        JournalSegment reopened = JournalSegment.open(path, true);
+        assertThat(reopened.getNextSequence()).isEqualTo(2);
+        assertThat(reopened.append(payload(2, 20))).isTrue();
+        reopened.force();
+
+        List<ByteBuffer> records = new ArrayList<>();
+        JournalSegment.open(path, false).read(records::add);
+        assertThat(records).extracting(record -> record.getLong(0)).containsExactly(1L, 2L);
+        assertThat(records.get(1).getLong(Long.BYTES)).isEqualTo(20);
+    }
+
+    @Test
+    void appendIsRefusedWhenTheSegmentIsFull() throws IOException {
+        JournalSegment segment = JournalSegment.create(directory.resolve("full.journal"), 1, HEADER_SIZE + 2 * RECORD_SIZE);
+
+        assertThat(segment.append(payload(1, 0))).isTrue();
+        assertThat(segment.append(payload(2, 0))).isTrue();
+        assertThat(segment.append(payload(3, 0))).isFalse();
+        assertThat(segment.getNextSequence()).isEqualTo(3);
+    }
+
+    private Path segmentWith(long... sequences) throws IOException {
+        Path path = directory.resolve("segment.journal");
+        JournalSegment segment = JournalSegment.create(path, sequences[0], SEGMENT_SIZE);
+        for (long sequence : sequences) {
+            assertThat(segment.append(payload(sequence, sequence * 10))).isTrue();
+        }
+        segment.force();
+        return path;
+    }
+
+    private static List<Long> readSequences(JournalSegment segment) {
+        List<Long> sequences = new ArrayList<>();
+        segment.read(record -> sequences.add(record.getLong(0)));
+        return sequences;
+    }
+
+    private static ByteBuffer payload(long sequence, long value) {
+        return ByteBuffer.allocate(PAYLOAD_SIZE).putLong(sequence).putLong(value).putLong(-value).flip();
+    }
+
+    private static int recordOffset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private static void overwrite(Path path, long offset, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), offset);
+        }
+    }
+}
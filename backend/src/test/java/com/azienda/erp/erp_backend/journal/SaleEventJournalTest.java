@@ -0,0 +1,128 @@
+package com.azienda.erp.erp_backend.journal;
+
+import com.azienda.erp.erp_backend.dto.SaleTotals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica la scrittura e la rilettura degli eventi del journal su una cartella temporanea,
+ * con segmenti della dimensione minima così che pochi eventi bastino a riempirne più di uno.
+ */
+class SaleEventJournalTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 15);
+    private static final int EVENTS = 2000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void eventsRollToNewSegmentsAndAreReplayedInOrder() throws IOException {
+        SaleEventJournal journal = openJournal();
+        for (long saleId = 1; saleId <= EVENTS; saleId++) {
+            assertThat(journal.append(SaleChangedEvent.created(saleId, totals(saleId)))).isEqualTo(saleId);
+        }
+
+        assertThat(segmentCount()).isGreaterThan(1);
+        List<SaleChangedEvent> events = replay(journal);
+        assertThat(events).hasSize(EVENTS);
+        assertThat(events).extracting(SaleChangedEvent::getSaleId)
+                .containsExactlyElementsOf(Stream.iterate(1L, id -> id + 1).limit(EVENTS).toList());
+        assertThat(events.get(EVENTS - 1).getAfter().getRevenueCents()).isEqualTo(EVENTS * 100L + 5);
+    }
+
+    @Test
+    void reopenedJournalContinuesTheSequence() throws IOException {
+        SaleEventJournal journal = openJournal();
+        for (long saleId = 1; saleId <= EVENTS; saleId++) {
+            journal.append(SaleChangedEvent.created(saleId, totals(saleId)));
+        }
+        journal.close();
+
+        SaleEventJournal reopened = openJournal();
+        assertThat(reopened.append(SaleChangedEvent.deleted(1, totals(1)))).isEqualTo(EVENTS + 1);
+
+        List<SaleChangedEvent> events = replay(reopened);
+        assertThat(events).hasSize(EVENTS + 1);
+        SaleChangedEvent last = events.get(EVENTS);
+        assertThat(last.getType()).isEqualTo(SaleChangedEvent.Type.DELETED);
+        assertThat(last.getAfter()).isNull();
+        assertThat(last.getBefore().getDay()).isEqualTo(DAY);
+    }
+
+    @Test
+    void updateEventKeepsBothTotalsInCents() throws IOException {
+        SaleEventJournal journal = openJournal();
+        SaleTotals before = new SaleTotals(DAY, 1999, 733, 10, 3);
+        SaleTotals after = new SaleTotals(DAY.plusDays(1), 2001, 801, 0, 4);
+        journal.append(SaleChangedEvent.updated(7, before, after));
+
+        SaleChangedEvent event = replay(journal).get(0);
+        assertThat(event.getBefore()).usingRecursiveComparison().isEqualTo(before);
+        assertThat(event.getAfter()).usingRecursiveComparison().isEqualTo(after);
+    }
+
+    @Test
+    void recordsWithAmountsInEurosAreStillReadable() throws IOException {
+        // Record scritto prima del passaggio ai centesimi: importi come double in euro e nessun flag dedicato
+        JournalSegment legacy = JournalSegment.create(directory.resolve(String.format("sales-%020d.journal", 1)), 1, 4096);
+        ByteBuffer payload = ByteBuffer.allocate(128)
+                .putLong(1)
+                .put((byte) SaleChangedEvent.Type.CREATED.ordinal())
+                .putLong(42)
+                .putLong(Instant.parse("2024-03-15T10:00:00Z").toEpochMilli())
+                .put((byte) 2)
+                .putLong(DAY.toEpochDay())
+                .putDouble(12.34)
+                .putDouble(5.67)
+                .putDouble(0.1)
+                .putLong(3)
+                .flip();
+        assertThat(legacy.append(payload)).isTrue();
+        legacy.force();
+
+        SaleEventJournal journal = openJournal();
+        journal.append(SaleChangedEvent.created(43, totals(43)));
+
+        List<SaleChangedEvent> events = replay(journal);
+        assertThat(events).extracting(SaleChangedEvent::getSaleId).containsExactly(42L, 43L);
+        assertThat(events.get(0).getAfter())
+                .usingRecursiveComparison().isEqualTo(new SaleTotals(DAY, 1234, 567, 10, 3));
+    }
+
+    private SaleEventJournal openJournal() {
+        SaleEventJournal journal = new SaleEventJournal(true, directory.toString(), 0, false);
+        journal.open();
+        assertThat(journal.isEnabled()).isTrue();
+        return journal;
+    }
+
+    private static List<SaleChangedEvent> replay(SaleEventJournal journal) throws IOException {
+        List<SaleChangedEvent> events = new ArrayList<>();
+        long count = journal.replay(events::add);
+        assertThat(count).isEqualTo(events.size());
+        return events;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static SaleTotals totals(long saleId) {
+        return new SaleTotals(DAY, saleId * 100 + 5, saleId * 30, 0, 1);
+    }
+}
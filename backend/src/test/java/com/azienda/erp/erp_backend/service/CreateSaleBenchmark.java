@@ -0,0 +1,128 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.entity.Product;
+import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.entity.SaleItem;
+import com.azienda.erp.erp_backend.entity.Supplier;
+import com.azienda.erp.erp_backend.repository.ProductRepository;
+import com.azienda.erp.erp_backend.repository.SupplierRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Misura la creazione di una vendita per diverse dimensioni dello scontrino: istruzioni SQL preparate per vendita,
+ * contate dalle statistiche di Hibernate, e latenza di SaleService.createSale in un ciclo cronometrato.
+ * Con il batching JDBC ogni istruzione preparata corrisponde a un'andata e ritorno verso il database.
+ * Il database è H2 in memoria, quindi le latenze non includono la rete: il numero di istruzioni
+ * è il dato confrontabile con MySQL.
+ * Si esegue con {@code mvn test -Pbenchmark -Dtest=CreateSaleBenchmark}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@Tag("benchmark")
+class CreateSaleBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(CreateSaleBenchmark.class);
+
+    private static final int[] BASKET_SIZES = {1, 5, 10, 40};
+    private static final int WARMUP_SALES = 200;
+    private static final int MEASURED_SALES = 500;
+    private static final long FIRST_BARCODE = 4_000_000;
+
+    @Autowired
+    private SaleService saleService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void measureCreateSale() {
+        Supplier supplier = supplierRepository.save(new Supplier(null, "Fornitore benchmark", "Via Roma 1", "4000000"));
+        int products = Arrays.stream(BASKET_SIZES).max().orElseThrow();
+        for (int i = 0; i < products; i++) {
+            long barcode = FIRST_BARCODE + i;
+            productRepository.save(new Product(null, barcode, "Prodotto " + barcode, supplier, 10_000_000, 1.10, 2.35));
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        logger.info("createSale su H2, {} vendite misurate per dimensione dopo {} di riscaldamento",
+                MEASURED_SALES, WARMUP_SALES);
+        logger.info(String.format("%8s %12s %12s %10s %10s %10s %10s",
+                "righe", "istr./vend.", "ins./vend.", "p50 ms", "p95 ms", "p99 ms", "vendite/s"));
+        for (int basketSize : BASKET_SIZES) {
+            for (int i = 0; i < WARMUP_SALES; i++) {
+                saleService.createSale(basket(basketSize));
+            }
+
+            statistics.clear();
+            long[] latencies = new long[MEASURED_SALES];
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_SALES; i++) {
+                long saleStart = System.nanoTime();
+                saleService.createSale(basket(basketSize));
+                latencies[i] = System.nanoTime() - saleStart;
+            }
+            long elapsed = System.nanoTime() - start;
+            long statements = statistics.getPrepareStatementCount();
+            long inserts = statistics.getEntityInsertCount();
+
+            Arrays.sort(latencies);
+            logger.info(String.format("%8d %12.1f %12.1f %10.3f %10.3f %10.3f %10.0f",
+                    basketSize,
+                    (double) statements / MEASURED_SALES,
+                    (double) inserts / MEASURED_SALES,
+                    percentileMillis(latencies, 0.50),
+                    percentileMillis(latencies, 0.95),
+                    percentileMillis(latencies, 0.99),
+                    MEASURED_SALES * 1e9 / elapsed));
+            assertThat(inserts).isEqualTo((long) MEASURED_SALES * (basketSize + 1));
+        }
+    }
+
+    private static Sale basket(int size) {
+        List<SaleItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Product product = new Product();
+            product.setBarcode(FIRST_BARCODE + i);
+            SaleItem item = new SaleItem();
+            item.setProduct(product);
+            item.setQuantitySold(1);
+            items.add(item);
+        }
+        Sale sale = new Sale();
+        sale.setSaleItems(items);
+        sale.setPaymentMethods("CASH");
+        sale.setDiscount(0);
+        return sale;
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(percentile * sortedNanos.length) - 1);
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+}
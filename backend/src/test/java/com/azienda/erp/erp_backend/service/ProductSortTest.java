@@ -0,0 +1,28 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.exception.InvalidProductSearchException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Verifica che ordinamento e verso della ricerca prodotti accettino solo i valori documentati.
+ */
+class ProductSortTest {
+
+    @Test
+    void parsesSortIgnoringCase() {
+        assertThat(ProductSort.from(" Price ")).isEqualTo(ProductSort.PRICE);
+        assertThatThrownBy(() -> ProductSort.from("cost")).isInstanceOf(InvalidProductSearchException.class);
+    }
+
+    @Test
+    void parsesOnlyAscOrDescDirection() {
+        assertThat(ProductSort.isDescending("asc")).isFalse();
+        assertThat(ProductSort.isDescending("DESC")).isTrue();
+        assertThatThrownBy(() -> ProductSort.isDescending("dsc")).isInstanceOf(InvalidProductSearchException.class);
+        assertThatThrownBy(() -> ProductSort.isDescending("")).isInstanceOf(InvalidProductSearchException.class);
+        assertThatThrownBy(() -> ProductSort.isDescending(null)).isInstanceOf(InvalidProductSearchException.class);
+    }
+}
@@ -0,0 +1,100 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.exception.SaleWriteTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifica che un chiamante riceva un errore di attesa scaduta solo per vendite che non verranno registrate.
+ * Il servizio delle vendite simulato trattiene la prima vendita oltre l'attesa massima, come un lotto lento.
+ */
+class SaleGroupCommitWriterTest {
+
+    private static final long TIMEOUT_MS = 100;
+    private static final long SLOW_WRITE_MS = 4 * TIMEOUT_MS;
+
+    private SaleService saleService;
+    private SaleGroupCommitWriter writer;
+
+    @BeforeEach
+    void startWriter() {
+        saleService = mock(SaleService.class);
+        writer = new SaleGroupCommitWriter(saleService, mock(IdempotencyService.class),
+                mock(PlatformTransactionManager.class), true, 1, 0, 16, TIMEOUT_MS);
+        writer.start();
+    }
+
+    @AfterEach
+    void stopWriter() throws InterruptedException {
+        writer.stop();
+    }
+
+    @Test
+    void callerOfASlowClaimedSaleReceivesTheCommittedSale() throws Exception {
+        Sale slow = new Sale();
+        CountDownLatch claimed = new CountDownLatch(1);
+        when(saleService.createSale(same(slow), any())).thenAnswer(invocation -> {
+            claimed.countDown();
+            Thread.sleep(SLOW_WRITE_MS);
+            return slow;
+        });
+
+        long start = System.nanoTime();
+        CompletableFuture<Sale> result = CompletableFuture.supplyAsync(() -> writer.createSale(slow, null));
+        assertThat(claimed.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // L'attesa massima scade durante la scrittura: il chiamante riceve comunque la vendita registrata
+        assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(slow);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(SLOW_WRITE_MS);
+    }
+
+    @Test
+    void saleThatTimesOutInTheQueueIsNeverWritten() throws Exception {
+        Sale slow = new Sale();
+        Sale queued = new Sale();
+        CountDownLatch claimed = new CountDownLatch(1);
+        when(saleService.createSale(same(slow), any())).thenAnswer(invocation -> {
+            claimed.countDown();
+            Thread.sleep(SLOW_WRITE_MS);
+            return slow;
+        });
+        when(saleService.createSale(same(queued), any())).thenReturn(queued);
+
+        CompletableFuture<Sale> slowResult = CompletableFuture.supplyAsync(() -> writer.createSale(slow, null));
+        assertThat(claimed.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // La seconda vendita resta in coda dietro il lotto lento fino alla scadenza dell'attesa
+        assertThatThrownBy(() -> writer.createSale(queued, null)).isInstanceOf(SaleWriteTimeoutException.class);
+        assertThat(slowResult.get(5, TimeUnit.SECONDS)).isSameAs(slow);
+
+        // Il thread di scrittura ha ormai superato la vendita scartata senza registrarla
+        writer.stop();
+        verify(saleService, never()).createSale(same(queued), any());
+    }
+
+    @Test
+    void writeErrorIsPropagatedToTheCaller() {
+        Sale failing = new Sale();
+        when(saleService.createSale(same(failing), any())).thenThrow(new IllegalArgumentException("Vendita non valida"));
+
+        assertThatThrownBy(() -> writer.createSale(failing, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Vendita non valida");
+    }
+}
@@ -0,0 +1,154 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.entity.Product;
+import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.entity.SaleItem;
+import com.azienda.erp.erp_backend.entity.Supplier;
+import com.azienda.erp.erp_backend.exception.IdempotencyKeyReusedException;
+import com.azienda.erp.erp_backend.exception.SaleNotFoundException;
+import com.azienda.erp.erp_backend.repository.ProductRepository;
+import com.azienda.erp.erp_backend.repository.SupplierRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Verifica la creazione delle vendite con chiave di idempotenza: un nuovo invio della stessa vendita
+ * restituisce quella già creata, anche con richieste concorrenti, mentre una chiave riusata
+ * per una vendita diversa viene respinta. In ogni caso le giacenze vengono scalate una sola volta.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SaleIdempotencyTest {
+
+    private static final AtomicLong BARCODES = new AtomicLong(9_700_000);
+    private static final int STOCK = 100;
+
+    @Autowired
+    private SaleGroupCommitWriter saleGroupCommitWriter;
+
+    @Autowired
+    private SaleService saleService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    private Product first;
+    private Product second;
+
+    @BeforeEach
+    void createProducts() {
+        Supplier supplier = supplierRepository.save(new Supplier(null, "Fornitore", "Via Roma 1",
+                String.valueOf(BARCODES.incrementAndGet())));
+        first = createProduct(supplier);
+        second = createProduct(supplier);
+    }
+
+    @Test
+    void replayReturnsTheSaleAlreadyCreated() {
+        String key = UUID.randomUUID().toString();
+        Sale created = saleGroupCommitWriter.createSale(sale(first, 1, second, 2), key);
+
+        // Stesse righe in ordine diverso: la richiesta è la stessa
+        Sale replayed = saleGroupCommitWriter.createSale(sale(second, 2, first, 1), key);
+
+        assertThat(replayed.getId()).isEqualTo(created.getId());
+        assertThat(stockOf(first)).isEqualTo(STOCK - 1);
+        assertThat(stockOf(second)).isEqualTo(STOCK - 2);
+    }
+
+    @Test
+    void concurrentRequestsWithTheSameKeyCreateOneSale() throws Exception {
+        int requests = 8;
+        String key = UUID.randomUUID().toString();
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Sale>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return saleGroupCommitWriter.createSale(sale(first, 1, second, 1), key);
+                }));
+            }
+            start.countDown();
+
+            List<Long> saleIds = new ArrayList<>();
+            for (Future<Sale> future : futures) {
+                saleIds.add(future.get(30, TimeUnit.SECONDS).getId());
+            }
+            assertThat(saleIds).hasSize(requests).containsOnly(saleIds.get(0));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(stockOf(first)).isEqualTo(STOCK - 1);
+        assertThat(stockOf(second)).isEqualTo(STOCK - 1);
+    }
+
+    @Test
+    void keyReusedForADifferentSaleIsRejected() {
+        String key = UUID.randomUUID().toString();
+        saleGroupCommitWriter.createSale(sale(first, 1, second, 1), key);
+
+        assertThatThrownBy(() -> saleGroupCommitWriter.createSale(sale(first, 3, second, 1), key))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThat(stockOf(first)).isEqualTo(STOCK - 1);
+        assertThat(stockOf(second)).isEqualTo(STOCK - 1);
+    }
+
+    @Test
+    void replayOfADeletedSaleIsNotRecreated() {
+        String key = UUID.randomUUID().toString();
+        Sale created = saleGroupCommitWriter.createSale(sale(first, 1, second, 1), key);
+        saleService.deleteSale(created.getId());
+
+        assertThatThrownBy(() -> saleGroupCommitWriter.createSale(sale(first, 1, second, 1), key))
+                .isInstanceOf(SaleNotFoundException.class);
+        assertThat(stockOf(first)).isEqualTo(STOCK);
+        assertThat(stockOf(second)).isEqualTo(STOCK);
+    }
+
+    private Product createProduct(Supplier supplier) {
+        long barcode = BARCODES.incrementAndGet();
+        return productRepository.save(new Product(null, barcode, "Prodotto " + barcode, supplier, STOCK, 1.0, 2.0));
+    }
+
+    private int stockOf(Product product) {
+        return productRepository.findById(product.getId()).orElseThrow().getQuantity();
+    }
+
+    private static Sale sale(Product firstProduct, int firstQuantity, Product secondProduct, int secondQuantity) {
+        Sale sale = new Sale();
+        sale.setSaleItems(new ArrayList<>(List.of(item(firstProduct, firstQuantity), item(secondProduct, secondQuantity))));
+        sale.setPaymentMethods("CASH");
+        sale.setDiscount(0);
+        return sale;
+    }
+
+    private static SaleItem item(Product product, int quantity) {
+        Product requested = new Product();
+        requested.setBarcode(product.getBarcode());
+        SaleItem item = new SaleItem();
+        item.setProduct(requested);
+        item.setQuantitySold(quantity);
+        return item;
+    }
+}
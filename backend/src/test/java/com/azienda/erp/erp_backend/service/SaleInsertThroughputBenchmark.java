@@ -0,0 +1,396 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.dto.BulkSaleEntry;
+import com.azienda.erp.erp_backend.dto.BulkSaleResponse;
+import com.azienda.erp.erp_backend.entity.IdSequences;
+import com.azienda.erp.erp_backend.entity.Product;
+import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.entity.SaleItem;
+import com.azienda.erp.erp_backend.entity.Supplier;
+import com.azienda.erp.erp_backend.repository.IdSequenceInitializer;
+import com.azienda.erp.erp_backend.repository.ProductRepository;
+import com.azienda.erp.erp_backend.repository.SupplierRepository;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.TableGenerator;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Misura la velocità di inserimento delle vendite con gli ID assegnati a blocchi dalla tabella id_sequences:
+ * vendite al secondo e istruzioni SQL per vendita con createSale, da uno e da più thread, e con l'acquisizione
+ * a lotti, insieme al numero di blocchi di ID prelevati dalla tabella. Misura anche il riallineamento dei contatori
+ * di IdSequenceInitializer su righe inserite con ID esterni al blocco corrente.
+ * Il confronto con gli ID AUTO_INCREMENT usati in precedenza avviene su due coppie di tabelle gemelle di vendite
+ * e righe, scritte con JDBC nello stesso modo in cui Hibernate scrive i due tipi di ID: con IDENTITY un insert
+ * per riga, perché ogni ID va letto dal database, con i blocchi di ID un insert per la vendita e uno in batch
+ * per le righe.
+ * Il database è H2 in memoria: le istruzioni e i blocchi sono il dato confrontabile con MySQL.
+ * Si esegue con {@code mvn test -Pbenchmark -Dtest=SaleInsertThroughputBenchmark}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@Tag("benchmark")
+class SaleInsertThroughputBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaleInsertThroughputBenchmark.class);
+
+    private static final int ITEMS_PER_SALE = 10;
+    private static final int WARMUP_SALES = 200;
+    private static final int MEASURED_SALES = 1000;
+    private static final int THREADS = 4;
+    private static final int BULK_SIZE = 500;
+    private static final int BULK_ROUNDS = 4;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong(5_000_000);
+
+    @Autowired
+    private SaleService saleService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    @Autowired
+    private IdSequenceInitializer idSequenceInitializer;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void enableStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void measureSingleThreadedCreateSale() {
+        long firstBarcode = createProducts(ITEMS_PER_SALE);
+        for (int i = 0; i < WARMUP_SALES; i++) {
+            saleService.createSale(basket(firstBarcode));
+        }
+
+        Counters before = new Counters();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_SALES; i++) {
+            saleService.createSale(basket(firstBarcode));
+        }
+        report("createSale, 1 thread", MEASURED_SALES, System.nanoTime() - start, before);
+    }
+
+    @Test
+    void measureConcurrentCreateSale() throws Exception {
+        // Ogni thread vende prodotti propri, così i lock sulle giacenze non si sovrappongono
+        List<Long> firstBarcodes = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            firstBarcodes.add(createProducts(ITEMS_PER_SALE));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            runOnEachThread(executor, firstBarcodes, WARMUP_SALES / THREADS);
+
+            Counters before = new Counters();
+            long start = System.nanoTime();
+            runOnEachThread(executor, firstBarcodes, MEASURED_SALES / THREADS);
+            report("createSale, " + THREADS + " thread", MEASURED_SALES, System.nanoTime() - start, before);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void measureBulkIngest() {
+        long firstBarcode = createProducts(ITEMS_PER_SALE);
+        saleService.ingestSales(bulk(firstBarcode, BULK_SIZE));
+
+        Counters before = new Counters();
+        long start = System.nanoTime();
+        for (int round = 0; round < BULK_ROUNDS; round++) {
+            BulkSaleResponse response = saleService.ingestSales(bulk(firstBarcode, BULK_SIZE));
+            assertThat(response.getCreated()).isEqualTo(BULK_SIZE);
+        }
+        report("ingestSales, lotti da " + BULK_SIZE, BULK_SIZE * BULK_ROUNDS, System.nanoTime() - start, before);
+    }
+
+    @Test
+    void measureIdSequenceAlignment() {
+        // Un fornitore inserito senza passare dal generatore, come in un database nato con AUTO_INCREMENT
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM supplier", Long.class);
+        long legacyId = maxId + 10_000;
+        jdbcTemplate.update("INSERT INTO supplier (id, name, address, phone_number) VALUES (?, ?, ?, ?)",
+                legacyId, "Fornitore esistente", "Via Roma 1", String.valueOf(SEQUENCE.incrementAndGet()));
+
+        long start = System.nanoTime();
+        idSequenceInitializer.afterSingletonsInstantiated();
+        long elapsed = System.nanoTime() - start;
+
+        // Il blocco già in memoria resta valido: il contatore garantisce che i blocchi successivi
+        // partano dopo l'ID esistente
+        long nextValue = nextValue("supplier");
+        logger.info("Riallineamento dei contatori ID in {} ms: ID esistente {}, contatore dei fornitori {}",
+                String.format("%.1f", elapsed / 1e6), legacyId, nextValue);
+        assertThat(nextValue - allocationSize(Supplier.class) + 1).isGreaterThan(legacyId);
+    }
+
+    @Test
+    void measureIdentityBaselineAgainstPooledIds() {
+        createTwinTables();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<TwinWriter> writers = List.of(new IdentityWriter(), new PooledWriter(allocationSize(Sale.class)));
+        for (TwinWriter writer : writers) {
+            for (int i = 0; i < WARMUP_SALES; i++) {
+                transaction.executeWithoutResult(status -> writer.writeSale());
+            }
+        }
+
+        logger.info(String.format("%-32s %8s %16s %16s", "ID delle tabelle gemelle", "vendite", "vendite/s", "istr./vendita"));
+        for (TwinWriter writer : writers) {
+            long statementsBefore = writer.statements;
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_SALES; i++) {
+                transaction.executeWithoutResult(status -> writer.writeSale());
+            }
+            long elapsed = System.nanoTime() - start;
+            double statementsPerSale = (double) (writer.statements - statementsBefore) / MEASURED_SALES;
+            logger.info(String.format("%-32s %8d %16.0f %16.2f",
+                    writer.label, MEASURED_SALES, MEASURED_SALES * 1e9 / elapsed, statementsPerSale));
+        }
+        assertThat(writers.get(1).statements).isLessThan(writers.get(0).statements);
+    }
+
+    private void runOnEachThread(ExecutorService executor, List<Long> firstBarcodes, int salesPerThread)
+            throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (long firstBarcode : firstBarcodes) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < salesPerThread; i++) {
+                    saleService.createSale(basket(firstBarcode));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private void report(String label, int sales, long elapsedNanos, Counters before) {
+        long statements = statistics.getPrepareStatementCount() - before.statements;
+        long saleBlocks = (nextValue("sale") - before.saleNextValue) / allocationSize(Sale.class);
+        long itemBlocks = (nextValue("sale_item") - before.itemNextValue) / allocationSize(SaleItem.class);
+        logger.info(String.format("%-32s %8d vendite %8.0f vendite/s %8.2f istr./vendita   blocchi ID: %d vendite, %d righe",
+                label, sales, sales * 1e9 / elapsedNanos, (double) statements / sales, saleBlocks, itemBlocks));
+        assertThat(saleBlocks).isLessThanOrEqualTo(sales / allocationSize(Sale.class) + THREADS);
+    }
+
+    private long nextValue(String sequence) {
+        return jdbcTemplate.queryForObject("SELECT " + IdSequences.VALUE_COLUMN + " FROM " + IdSequences.TABLE
+                + " WHERE " + IdSequences.NAME_COLUMN + " = ?", Long.class, sequence);
+    }
+
+    private static int allocationSize(Class<?> entity) {
+        try {
+            return entity.getDeclaredField("id").getAnnotation(TableGenerator.class).allocationSize();
+        } catch (NoSuchFieldException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private long createProducts(int count) {
+        Supplier supplier = supplierRepository.save(new Supplier(null, "Fornitore benchmark", "Via Roma 1",
+                String.valueOf(SEQUENCE.incrementAndGet())));
+        long firstBarcode = SEQUENCE.get() + 1;
+        for (int i = 0; i < count; i++) {
+            long barcode = SEQUENCE.incrementAndGet();
+            productRepository.save(new Product(null, barcode, "Prodotto " + barcode, supplier, 10_000_000, 1.10, 2.35));
+        }
+        return firstBarcode;
+    }
+
+    private static List<BulkSaleEntry> bulk(long firstBarcode, int size) {
+        List<BulkSaleEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            BulkSaleEntry entry = new BulkSaleEntry();
+            entry.setClientId("benchmark-" + SEQUENCE.incrementAndGet());
+            entry.setSale(basket(firstBarcode));
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static Sale basket(long firstBarcode) {
+        List<SaleItem> items = new ArrayList<>(ITEMS_PER_SALE);
+        for (int i = 0; i < ITEMS_PER_SALE; i++) {
+            Product product = new Product();
+            product.setBarcode(firstBarcode + i);
+            SaleItem item = new SaleItem();
+            item.setProduct(product);
+            item.setQuantitySold(1);
+            items.add(item);
+        }
+        Sale sale = new Sale();
+        sale.setSaleItems(items);
+        sale.setPaymentMethods("CASH");
+        sale.setDiscount(0);
+        return sale;
+    }
+
+    private void createTwinTables() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS bench_identity_sale (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "sale_date TIMESTAMP NOT NULL, total_price DOUBLE NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS bench_identity_sale_item (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "sale_id BIGINT NOT NULL, product_barcode BIGINT NOT NULL, quantity_sold INT NOT NULL, "
+                + "selling_price DOUBLE NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS bench_pooled_sale (id BIGINT PRIMARY KEY, "
+                + "sale_date TIMESTAMP NOT NULL, total_price DOUBLE NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS bench_pooled_sale_item (id BIGINT PRIMARY KEY, "
+                + "sale_id BIGINT NOT NULL, product_barcode BIGINT NOT NULL, quantity_sold INT NOT NULL, "
+                + "selling_price DOUBLE NOT NULL)");
+    }
+
+    /**
+     * Scrittura di una vendita con le sue righe in una coppia di tabelle gemelle, con il conteggio
+     * delle istruzioni inviate al database.
+     */
+    private abstract static class TwinWriter {
+        private final String label;
+        long statements;
+
+        TwinWriter(String label) {
+            this.label = label;
+        }
+
+        abstract void writeSale();
+    }
+
+    /**
+     * ID AUTO_INCREMENT: ogni insert restituisce l'ID generato, quindi le righe non possono andare in batch.
+     */
+    private final class IdentityWriter extends TwinWriter {
+
+        IdentityWriter() {
+            super("IDENTITY (AUTO_INCREMENT)");
+        }
+
+        @Override
+        void writeSale() {
+            long saleId = insertReturningId("INSERT INTO bench_identity_sale (sale_date, total_price) VALUES (?, ?)",
+                    Timestamp.from(Instant.now()), 2.35 * ITEMS_PER_SALE);
+            for (int i = 0; i < ITEMS_PER_SALE; i++) {
+                insertReturningId("INSERT INTO bench_identity_sale_item (sale_id, product_barcode, quantity_sold, "
+                        + "selling_price) VALUES (?, ?, ?, ?)", saleId, (long) i, 1, 2.35);
+            }
+        }
+
+        private long insertReturningId(String sql, Object... values) {
+            KeyHolder keys = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                for (int i = 0; i < values.length; i++) {
+                    statement.setObject(i + 1, values[i]);
+                }
+                return statement;
+            }, keys);
+            statements++;
+            return keys.getKey().longValue();
+        }
+    }
+
+    /**
+     * ID a blocchi: gli ID vengono assegnati in memoria e le righe della vendita vanno in un unico batch.
+     * Ogni blocco viene prelevato in una transazione separata, come fa il generatore di Hibernate.
+     */
+    private final class PooledWriter extends TwinWriter {
+        private final int blockSize;
+        private final TransactionTemplate blockTransaction;
+        private final String sequence = "bench_pooled_" + SEQUENCE.incrementAndGet();
+        private long nextId;
+        private long blockEnd;
+
+        PooledWriter(int blockSize) {
+            super("ID a blocchi da " + blockSize);
+            this.blockSize = blockSize;
+            this.blockTransaction = new TransactionTemplate(transactionManager);
+            this.blockTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            jdbcTemplate.update("INSERT INTO " + IdSequences.TABLE + " (" + IdSequences.NAME_COLUMN + ", "
+                    + IdSequences.VALUE_COLUMN + ") VALUES (?, ?)", sequence, 1L);
+        }
+
+        @Override
+        void writeSale() {
+            long saleId = nextId();
+            jdbcTemplate.update("INSERT INTO bench_pooled_sale (id, sale_date, total_price) VALUES (?, ?, ?)",
+                    saleId, Timestamp.from(Instant.now()), 2.35 * ITEMS_PER_SALE);
+            List<Object[]> items = new ArrayList<>(ITEMS_PER_SALE);
+            for (int i = 0; i < ITEMS_PER_SALE; i++) {
+                items.add(new Object[]{nextId(), saleId, (long) i, 1, 2.35});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO bench_pooled_sale_item (id, sale_id, product_barcode, quantity_sold, "
+                    + "selling_price) VALUES (?, ?, ?, ?, ?)", items);
+            statements += 2;
+        }
+
+        private long nextId() {
+            if (nextId == blockEnd) {
+                nextId = blockTransaction.execute(status -> {
+                    Long start = jdbcTemplate.queryForObject("SELECT " + IdSequences.VALUE_COLUMN + " FROM "
+                            + IdSequences.TABLE + " WHERE " + IdSequences.NAME_COLUMN + " = ? FOR UPDATE", Long.class, sequence);
+                    jdbcTemplate.update("UPDATE " + IdSequences.TABLE + " SET " + IdSequences.VALUE_COLUMN + " = ? WHERE "
+                            + IdSequences.NAME_COLUMN + " = ?", start + blockSize, sequence);
+                    return start;
+                });
+                blockEnd = nextId + blockSize;
+                statements += 2;
+            }
+            return nextId++;
+        }
+    }
+
+    /**
+     * Contatori letti prima di una misura, per calcolarne le differenze.
+     */
+    private final class Counters {
+        private final long statements = statistics.getPrepareStatementCount();
+        private final long saleNextValue = nextValue("sale");
+        private final long itemNextValue = nextValue("sale_item");
+    }
+}
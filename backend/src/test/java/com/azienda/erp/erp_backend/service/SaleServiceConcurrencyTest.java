@@ -0,0 +1,135 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.entity.Product;
+import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.entity.SaleItem;
+import com.azienda.erp.erp_backend.entity.Supplier;
+import com.azienda.erp.erp_backend.exception.InsufficientProductQuantityException;
+import com.azienda.erp.erp_backend.repository.ProductRepository;
+import com.azienda.erp.erp_backend.repository.SupplierRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica che checkout concorrenti sullo stesso prodotto non vendano più pezzi di quelli disponibili:
+ * la condizione sulla giacenza dell'aggiornamento atomico viene rivalutata dopo l'attesa del lock sulla riga.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SaleServiceConcurrencyTest {
+
+    private static final AtomicLong BARCODES = new AtomicLong(9_000_000);
+
+    @Autowired
+    private SaleService saleService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    private Supplier supplier;
+
+    @BeforeEach
+    void createSupplier() {
+        supplier = supplierRepository.save(new Supplier(null, "Fornitore", "Via Roma 1",
+                String.valueOf(BARCODES.incrementAndGet())));
+    }
+
+    @Test
+    void twoConcurrentCheckoutsNeverOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 20; round++) {
+                Product product = createProduct(3);
+                List<Boolean> outcomes = checkoutConcurrently(executor, product.getBarcode(), 2, 2);
+
+                assertThat(outcomes).containsExactlyInAnyOrder(true, false);
+                assertThat(productRepository.findById(product.getId()).orElseThrow().getQuantity()).isEqualTo(1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void manyConcurrentCheckoutsSellExactlyTheAvailableStock() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Product product = createProduct(5);
+            List<Boolean> outcomes = checkoutConcurrently(executor, product.getBarcode(), 1, 16);
+
+            assertThat(outcomes).filteredOn(Boolean::booleanValue).hasSize(5);
+            assertThat(productRepository.findById(product.getId()).orElseThrow().getQuantity()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Product createProduct(int quantity) {
+        long barcode = BARCODES.incrementAndGet();
+        return productRepository.save(new Product(null, barcode, "Prodotto " + barcode, supplier, quantity, 1.0, 2.0));
+    }
+
+    /**
+     * Avvia insieme i checkout indicati e restituisce per ognuno se la vendita è stata registrata
+     * o respinta per disponibilità insufficiente.
+     */
+    private List<Boolean> checkoutConcurrently(ExecutorService executor, long barcode, int quantity, int checkouts)
+            throws InterruptedException, ExecutionException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < checkouts; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    saleService.createSale(sale(barcode, quantity));
+                    return true;
+                } catch (InsufficientProductQuantityException ex) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+
+        List<Boolean> outcomes = new ArrayList<>();
+        for (Future<Boolean> future : futures) {
+            try {
+                outcomes.add(future.get(30, TimeUnit.SECONDS));
+            } catch (TimeoutException ex) {
+                throw new AssertionError("Checkout non concluso entro il tempo massimo", ex);
+            }
+        }
+        return outcomes;
+    }
+
+    private static Sale sale(long barcode, int quantity) {
+        Product product = new Product();
+        product.setBarcode(barcode);
+        SaleItem item = new SaleItem();
+        item.setProduct(product);
+        item.setQuantitySold(quantity);
+        Sale sale = new Sale();
+        sale.setSaleItems(new ArrayList<>(List.of(item)));
+        sale.setPaymentMethods("CASH");
+        sale.setDiscount(0);
+        return sale;
+    }
+}
@@ -0,0 +1,98 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.catalog.ProductCatalog;
+import com.azienda.erp.erp_backend.dto.CatalogProduct;
+import com.azienda.erp.erp_backend.entity.Product;
+import com.azienda.erp.erp_backend.entity.Sale;
+import com.azienda.erp.erp_backend.entity.SaleItem;
+import com.azienda.erp.erp_backend.entity.Supplier;
+import com.azienda.erp.erp_backend.exception.ProductNotFoundException;
+import com.azienda.erp.erp_backend.repository.ProductRepository;
+import com.azienda.erp.erp_backend.repository.SupplierRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifica che le vendite non dipendano dal catalogo in memoria, che con più istanze del backend
+ * può non conoscere le modifiche fatte dalle altre. Il catalogo simulato restituisce sempre i dati
+ * precedenti alla modifica, che viene scritta direttamente nel database come farebbe un'altra istanza.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SaleServiceStaleCatalogTest {
+
+    private static final AtomicLong BARCODES = new AtomicLong(9_500_000);
+
+    @Autowired
+    private SaleService saleService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ProductCatalog productCatalog;
+
+    private Product product;
+
+    @BeforeEach
+    void createProduct() {
+        long barcode = BARCODES.incrementAndGet();
+        Supplier supplier = supplierRepository.save(new Supplier(null, "Fornitore", "Via Roma 1", String.valueOf(barcode)));
+        product = productRepository.save(new Product(null, barcode, "Prodotto " + barcode, supplier, 10, 1.0, 2.0));
+        CatalogProduct stale = new CatalogProduct(product.getId(), barcode, product.getName(), supplier.getId(), 1.0, 2.0);
+        when(productCatalog.resolve(any())).thenReturn(Map.of(barcode, stale));
+    }
+
+    @Test
+    void saleUsesThePriceChangedByAnotherInstance() {
+        jdbcTemplate.update("UPDATE product SET purchase_price = ?, selling_price = ? WHERE id = ?", 1.5, 3.25, product.getId());
+
+        Sale sale = saleService.createSale(sale(product.getBarcode(), 2));
+
+        assertThat(sale.getTotalPrice()).isEqualTo(6.5);
+        assertThat(sale.getSaleItems()).singleElement()
+                .satisfies(item -> assertThat(item.getPurchasePrice()).isEqualTo(3.0));
+    }
+
+    @Test
+    void saleOfAProductDeletedByAnotherInstanceIsRejectedAsNotFound() {
+        jdbcTemplate.update("DELETE FROM product WHERE id = ?", product.getId());
+
+        assertThatThrownBy(() -> saleService.createSale(sale(product.getBarcode(), 1)))
+                .isInstanceOf(ProductNotFoundException.class);
+    }
+
+    private static Sale sale(long barcode, int quantity) {
+        Product product = new Product();
+        product.setBarcode(barcode);
+        SaleItem item = new SaleItem();
+        item.setProduct(product);
+        item.setQuantitySold(quantity);
+        Sale sale = new Sale();
+        sale.setSaleItems(new ArrayList<>(List.of(item)));
+        sale.setPaymentMethods("CASH");
+        sale.setDiscount(0);
+        return sale;
+    }
+}
@@ -0,0 +1,101 @@
+package com.azienda.erp.erp_backend.service;
+
+import com.azienda.erp.erp_backend.dto.DailySaleCount;
+import com.azienda.erp.erp_backend.dto.SaleTotals;
+import com.azienda.erp.erp_backend.dto.SalesGrandTotals;
+import com.azienda.erp.erp_backend.journal.SaleChangedEvent;
+import com.azienda.erp.erp_backend.journal.SaleEventJournal;
+import com.azienda.erp.erp_backend.repository.SaleRepository;
+import com.azienda.erp.erp_backend.repository.SalesDailyRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifica quando la ricostruzione dei totali giornalieri si fida del journal e quando torna alle vendite.
+ * Il database contiene una vendita da 10 euro il primo giorno e una da 5 euro il secondo.
+ */
+class SalesRollupServiceTest {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 3, 15);
+    private static final LocalDate SECOND_DAY = FIRST_DAY.plusDays(1);
+
+    private SalesDailyRollupRepository rollupRepository;
+    private SaleRepository saleRepository;
+    private SaleEventJournal saleEventJournal;
+    private SalesRollupService service;
+
+    @BeforeEach
+    void createService() {
+        rollupRepository = mock(SalesDailyRollupRepository.class);
+        saleRepository = mock(SaleRepository.class);
+        saleEventJournal = mock(SaleEventJournal.class);
+        when(saleEventJournal.isEnabled()).thenReturn(true);
+        when(saleRepository.sumAllTotals()).thenReturn(new SalesGrandTotals(2L, 1500L, 600L, 0L, 2L));
+        when(saleRepository.countByLocalDate()).thenReturn(List.of(
+                new DailySaleCount(FIRST_DAY, 1L), new DailySaleCount(SECOND_DAY, 1L)));
+        when(saleRepository.streamAllTotals()).thenReturn(Stream.empty());
+        service = new SalesRollupService(rollupRepository, saleRepository, saleEventJournal, false);
+    }
+
+    @Test
+    void journalMatchingTheDatabaseIsReplayed() throws IOException {
+        journalContains(
+                SaleChangedEvent.created(1, new SaleTotals(FIRST_DAY, 1000, 400, 0, 1)),
+                SaleChangedEvent.created(2, new SaleTotals(SECOND_DAY, 500, 200, 0, 1)));
+
+        assertThat(service.rebuildFromJournal()).isEqualTo(2);
+        verify(saleRepository, never()).streamAllTotals();
+        verify(rollupRepository).applyDelta(FIRST_DAY, 1, 1000, 400, 0, 1);
+        verify(rollupRepository).applyDelta(SECOND_DAY, 1, 500, 200, 0, 1);
+    }
+
+    @Test
+    void journalWithTheSameGrandTotalsOnDifferentDaysIsRejected() throws IOException {
+        // Le due vendite risultano entrambe del primo giorno: i totali complessivi coincidono, quelli per giorno no
+        journalContains(
+                SaleChangedEvent.created(1, new SaleTotals(FIRST_DAY, 1000, 400, 0, 1)),
+                SaleChangedEvent.created(2, new SaleTotals(FIRST_DAY, 500, 200, 0, 1)));
+
+        service.rebuildFromJournal();
+
+        verify(saleRepository).streamAllTotals();
+        verify(rollupRepository, never()).applyDelta(eq(FIRST_DAY), eq(2L), anyLong(), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void journalWithLostWritesIsNotReplayed() throws IOException {
+        when(saleEventJournal.getWriteFailures()).thenReturn(1L);
+
+        service.rebuildFromJournal();
+
+        verify(saleEventJournal, never()).replay(any());
+        verify(saleRepository).streamAllTotals();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void journalContains(SaleChangedEvent... events) throws IOException {
+        doAnswer(invocation -> {
+            Consumer<SaleChangedEvent> consumer = invocation.getArgument(0);
+            for (SaleChangedEvent event : events) {
+                consumer.accept(event);
+            }
+            return (long) events.length;
+        }).when(saleEventJournal).replay(any(Consumer.class));
+    }
+}
@@ -17,6 +17,22 @@ export const ProductService = {
             throw error;
         }
     },
+    /**
+     * Cerca i prodotti con filtri, ordinamento e paginazione.
+     * @param {Object} params parametri della ricerca: name, supplierId, stockBelow, minPrice, maxPrice,
+     * sort (name, barcode, price o quantity), direction (asc o desc), page (da zero) e size
+     * @returns {Promise<AxiosResponse<Object>>} risposta contenente la pagina di prodotti e il totale
+     * @throws {Error} se si verifica un errore durante la richiesta
+     */
+    async searchProducts(params) {
+        try {
+            const response = await axios.get(`/products/search`, { params });
+            return response;
+        } catch (error) {
+            console.error('Errore durante la ricerca dei prodotti:', error);
+            throw error;
+        }
+    },
     /**
      * Recupera la lista di tutti i prodotti.
      * @returns {Promise<AxiosResponse<Product[]>>} risposta contenente la lista di prodotti
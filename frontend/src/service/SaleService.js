@@ -1,4 +1,9 @@
 import axios from './axiosSetup';
+import AuthService from './authService';
+
+// Attesa iniziale e massima prima di ricollegarsi al flusso delle vendite
+const STREAM_RETRY_MS = 2000;
+const STREAM_MAX_RETRY_MS = 30000;
 
 export const SaleService = {
 
@@ -64,6 +69,54 @@ export const SaleService = {
         }
     },
 
+    /**
+     * Recupera una pagina dell'archivio vendite dal server, filtrata per intervallo di date.
+     * 
+     * Effettua una richiesta GET all'endpoint /sales/archive con i filtri indicati.
+     * Per ottenere la pagina successiva si ripassa il nextPageToken restituito dalla chiamata precedente.
+     * Registra un messaggio di errore e lancia un errore se la richiesta fallisce.
+     * 
+     * @param {Object} params - Filtri della richiesta.
+     * @param {string} [params.from] - Primo giorno incluso (yyyy-MM-dd).
+     * @param {string} [params.to] - Ultimo giorno incluso (yyyy-MM-dd).
+     * @param {number} [params.size] - Numero di vendite per pagina.
+     * @param {string} [params.pageToken] - Token della pagina successiva.
+     * @returns {Promise<Object>} Una promessa che si risolve in { content, nextPageToken, hasNext }.
+     * @throws Genera un errore se la richiesta di rete fallisce.
+     */
+    async getSalesArchivePage(params = {}) {
+        try {
+            const response = await axios.get('/sales/archive', { params });
+            return response.data;
+        } catch (error) {
+            console.error('Errore durante il recupero dell\'archivio vendite:', error);
+            throw error;
+        }
+    },
+
+    /**
+     * Recupera dal server gli anni, i mesi e i giorni dell'archivio vendite con il numero di vendite di ciascuno.
+     *
+     * Effettua una richiesta GET all'endpoint /sales/facets.
+     * I mesi vengono restituiti solo se è indicato l'anno, i giorni solo se sono indicati anno e mese.
+     * Registra un messaggio di errore e lancia un errore se la richiesta fallisce.
+     *
+     * @param {Object} params - Filtri della richiesta.
+     * @param {number} [params.year] - Anno di cui ottenere i mesi.
+     * @param {number} [params.month] - Mese di cui ottenere i giorni.
+     * @returns {Promise<Object>} Una promessa che si risolve in { years, months, days }, ciascuno un array di { value, count }.
+     * @throws Genera un errore se la richiesta di rete fallisce.
+     */
+    async getSalesFacets(params = {}) {
+        try {
+            const response = await axios.get('/sales/facets', { params });
+            return response.data;
+        } catch (error) {
+            console.error('Errore durante il recupero del calendario vendite:', error);
+            throw error;
+        }
+    },
+
     /**
      * Recupera l'ultimo record di vendita dal server.
      * 
@@ -124,20 +177,44 @@ export const SaleService = {
         }
     },
 
+    /**
+     * Recupera dal server gli indicatori della dashboard, calcolati con query di aggregazione.
+     * 
+     * Effettua una richiesta GET all'endpoint /sales/summary.
+     * Restituisce numero di vendite, incasso e profitto di oggi e del mese corrente.
+     * Registra un messaggio di errore e lancia un errore se la richiesta fallisce.
+     * 
+     * @returns {Promise<Object>} Una promessa che si risolve in { today, currentMonth }, ciascuno con count, revenue e netProfit.
+     * @throws Genera un errore se la richiesta di rete fallisce.
+     */
+    async getSalesSummary() {
+        try {
+            const response = await axios.get('/sales/summary');
+            return response.data;
+        } catch (error) {
+            console.error('Errore durante il recupero degli indicatori delle vendite:', error);
+            throw error;
+        }
+    },
+
     /**
      * Salva un nuovo record di vendita sul server.
      * 
      * Esegue una richiesta POST all'endpoint /sales con i dati della vendita.
+     * Se viene indicata una chiave di idempotenza, un nuovo invio con la stessa chiave restituisce
+     * la vendita già registrata invece di crearne un'altra.
      * Restituisce la risposta del server se la richiesta ha successo.
      * Registra un messaggio di errore e lancia un errore se la richiesta fallisce.
      * 
      * @param {Object} saleData - I dati della vendita da salvare.
+     * @param {string} [idempotencyKey] - Chiave di idempotenza dell'invio.
      * @returns {Promise<Object>} Una promessa che si risolve nella risposta del server.
      * @throws Genera un errore se la richiesta di rete fallisce.
      */
-    async saveSale(saleData) {
+    async saveSale(saleData, idempotencyKey) {
         try {
-            const response = await axios.post('/sales', saleData);
+            const headers = idempotencyKey ? { 'Idempotency-Key': idempotencyKey } : {};
+            const response = await axios.post('/sales', saleData, { headers });
             return response;
         } catch (error) {
             console.error('Errore durante il salvataggio della vendita:', error);
@@ -186,6 +263,100 @@ export const SaleService = {
             console.error("Errore durante l'eliminazione della vendita:", error);
             throw error;
         }
+    },
+
+    /**
+     * Si collega al flusso in tempo reale delle vendite create, modificate e cancellate.
+     * 
+     * Apre una richiesta GET all'endpoint /sales/stream, che risponde con server-sent events.
+     * Usa fetch invece di EventSource per poter inviare il token di accesso nell'intestazione Authorization.
+     * Se il collegamento cade si ricollega da solo, con attese crescenti; su un 401 rinnova prima il token.
+     * Dopo ogni collegamento, e quando il server segnala eventi persi, viene chiamato onResync:
+     * il chiamante deve ricaricare i dati completi e poi applicare gli eventi successivi.
+     * 
+     * @param {Object} handlers - Funzioni chiamate all'arrivo degli eventi.
+     * @param {Function} handlers.onSaleEvent - Riceve { type, saleId, occurredAt, before, after } per ogni modifica.
+     * @param {Function} handlers.onResync - Chiamata quando occorre ricaricare i dati completi.
+     * @returns {Function} Una funzione che chiude il collegamento.
+     */
+    subscribeToSaleEvents({ onSaleEvent, onResync }) {
+        const controller = new AbortController();
+        let retryMs = STREAM_RETRY_MS;
+
+        const dispatch = (eventName, data) => {
+            if (eventName === 'sale') {
+                onSaleEvent(JSON.parse(data));
+            } else if (eventName === 'ready' || eventName === 'resync') {
+                onResync();
+            }
+        };
+
+        const connect = async () => {
+            while (!controller.signal.aborted) {
+                try {
+                    const response = await fetch(`${axios.defaults.baseURL}/sales/stream`, {
+                        headers: {
+                            Accept: 'text/event-stream',
+                            Authorization: `Bearer ${sessionStorage.getItem('accessToken')}`
+                        },
+                        signal: controller.signal
+                    });
+                    if (response.status === 401) {
+                        await AuthService.refreshAccessToken();
+                    } else if (response.ok) {
+                        retryMs = STREAM_RETRY_MS;
+                        await readEvents(response.body, dispatch);
+                    }
+                } catch (error) {
+                    if (controller.signal.aborted) {
+                        return;
+                    }
+                    console.error('Collegamento al flusso delle vendite interrotto:', error);
+                }
+                await new Promise((resolve) => setTimeout(resolve, retryMs));
+                retryMs = Math.min(retryMs * 2, STREAM_MAX_RETRY_MS);
+            }
+        };
+
+        connect();
+        return () => controller.abort();
     }
 };
 
+/**
+ * Legge un flusso di server-sent events e passa a dispatch nome e dati di ogni evento.
+ * I commenti, usati dal server come segnali di vita, vengono ignorati.
+ * 
+ * @param {ReadableStream} body - Il corpo della risposta.
+ * @param {Function} dispatch - Riceve il nome dell'evento e i suoi dati.
+ * @returns {Promise<void>} Una promessa che si risolve quando il server chiude il flusso.
+ */
+async function readEvents(body, dispatch) {
+    const reader = body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = '';
+    let eventName = 'message';
+    let data = [];
+    for (;;) {
+        const { value, done } = await reader.read();
+        if (done) {
+            return;
+        }
+        buffer += value;
+        const lines = buffer.split(/\r?\n/);
+        buffer = lines.pop();
+        for (const line of lines) {
+            if (line === '') {
+                if (data.length > 0 || eventName !== 'message') {
+                    dispatch(eventName, data.join('\n'));
+                }
+                eventName = 'message';
+                data = [];
+            } else if (line.startsWith('event:')) {
+                eventName = line.slice(6).trim();
+            } else if (line.startsWith('data:')) {
+                data.push(line.slice(5).replace(/^ /, ''));
+            }
+        }
+    }
+}
+